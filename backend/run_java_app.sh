@@ -41,6 +41,6 @@ fi
 
 # Run the application
 echo "Starting the application..."
-java -jar target/habit-stack-builder-1.0.0.jar
+java -jar target/habit-stack-builder-1.0.0-exec.jar
 
 echo "Application stopped."
\ No newline at end of file
@@ -33,7 +33,7 @@ if command -v mvn &> /dev/null; then
     mvn clean package -DskipTests
     if [ $? -eq 0 ]; then
         echo "Maven build successful. Starting application..."
-        java -jar target/habit-stack-builder-1.0.0.jar
+        java -jar target/habit-stack-builder-1.0.0-exec.jar
     else
         echo "Maven build failed. Please check the build configuration."
         exit 1
@@ -3,9 +3,11 @@ package com.habitstack;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableMongoAuditing
+@EnableScheduling
 public class HabitStackApplication {
     public static void main(String[] args) {
         SpringApplication.run(HabitStackApplication.class, args);
@@ -0,0 +1,39 @@
+package com.habitstack.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Serves the same models as CBOR or Smile when a client asks for them with
+ * {@code Accept: application/cbor} or {@code application/x-jackson-smile}. Both mappers start
+ * from Spring Boot's builder, so the spring.jackson settings apply to them as well.
+ * <p>
+ * The converters are appended after the defaults so that {@code Accept: *}{@code /*} keeps
+ * getting JSON.
+ */
+@Configuration
+public class BinaryFormatsConfig implements WebMvcConfigurer {
+    
+    private final Jackson2ObjectMapperBuilder cborBuilder;
+    private final Jackson2ObjectMapperBuilder smileBuilder;
+    
+    // The builder bean is prototype scoped, so each parameter is a separate instance
+    public BinaryFormatsConfig(Jackson2ObjectMapperBuilder cborBuilder, Jackson2ObjectMapperBuilder smileBuilder) {
+        this.cborBuilder = cborBuilder;
+        this.smileBuilder = smileBuilder;
+    }
+    
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new MappingJackson2CborHttpMessageConverter(cborBuilder.factory(new CBORFactory()).build()));
+        converters.add(new MappingJackson2SmileHttpMessageConverter(smileBuilder.factory(new SmileFactory()).build()));
+    }
+}
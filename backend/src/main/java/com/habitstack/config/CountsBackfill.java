@@ -0,0 +1,46 @@
+package com.habitstack.config;
+
+import com.habitstack.model.HabitStack;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Fills in completed_count and total_count on stacks saved before they were denormalised, so
+ * sparse field selections and summaries that read only the counters see them. The counters are
+ * derived from habits, so the version is left alone and existing ETags stay valid. Runs before
+ * the web server starts taking requests.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CountsBackfill implements SmartInitializingSingleton {
+    
+    private final MongoTemplate mongoTemplate;
+    
+    @Override
+    public void afterSingletonsInstantiated() {
+        Query missing = Query.query(new Criteria().orOperator(
+                Criteria.where("completed_count").exists(false),
+                Criteria.where("total_count").exists(false)));
+        Document habits = new Document("$ifNull", List.of("$habits", List.of()));
+        Document completedCount = new Document("$size", new Document("$filter", new Document("input", habits)
+                .append("cond", "$$this.completed")));
+        AggregationUpdate counts = AggregationUpdate.from(List.of(
+                context -> new Document("$set", new Document("completed_count", completedCount)
+                        .append("total_count", new Document("$size", habits)))));
+        
+        long updated = mongoTemplate.updateMulti(missing, counts, HabitStack.class).getModifiedCount();
+        if (updated > 0) {
+            log.info("Initialised habit counts on {} {} documents", updated, mongoTemplate.getCollectionName(HabitStack.class));
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.habitstack.config;
 
 import com.habitstack.model.HabitCategory;
+import com.habitstack.model.Owners;
 import com.habitstack.repository.HabitCategoryRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,17 +21,17 @@ public class DataInitializer implements CommandLineRunner {
     public void run(String... args) throws Exception {
         log.info("Initializing seed data for HabitCategory");
 
-        // Check if data already exists to avoid duplicates
-        if (habitCategoryRepository.count() == 0) {
-            habitCategoryRepository.save(new HabitCategory("Fitness", "#0000FF", "dumbbell", "user123"));
-            habitCategoryRepository.save(new HabitCategory("Mental Health", "#00FF00", "brain", "user123"));
-            habitCategoryRepository.save(new HabitCategory("Productivity", "#FF0000", "calendar", "user123"));
-            habitCategoryRepository.save(new HabitCategory("Nutrition", "#FFFF00", "apple", "user123"));
-            habitCategoryRepository.save(new HabitCategory("Sleep", "#800080", "bed", "user123"));
-            habitCategoryRepository.save(new HabitCategory("Social", "#FFA500", "users", "user123"));
+        // Seed categories belong to the default owner; check first to avoid duplicates
+        if (!habitCategoryRepository.existsByOwnerId(Owners.DEFAULT)) {
+            habitCategoryRepository.save(new HabitCategory(Owners.DEFAULT, "Fitness", "#0000FF", "dumbbell"));
+            habitCategoryRepository.save(new HabitCategory(Owners.DEFAULT, "Mental Health", "#00FF00", "brain"));
+            habitCategoryRepository.save(new HabitCategory(Owners.DEFAULT, "Productivity", "#FF0000", "calendar"));
+            habitCategoryRepository.save(new HabitCategory(Owners.DEFAULT, "Nutrition", "#FFFF00", "apple"));
+            habitCategoryRepository.save(new HabitCategory(Owners.DEFAULT, "Sleep", "#800080", "bed"));
+            habitCategoryRepository.save(new HabitCategory(Owners.DEFAULT, "Social", "#FFA500", "users"));
             log.info("Seed data for HabitCategory loaded successfully");
         } else {
             log.info("Seed data already exists, skipping initialization");
         }
     }
-}
\ No newline at end of file
+}
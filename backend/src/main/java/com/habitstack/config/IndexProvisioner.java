@@ -0,0 +1,92 @@
+package com.habitstack.config;
+
+import com.habitstack.model.Habit;
+import com.habitstack.model.HabitCategory;
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.ProgressData;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the indexes declared with {@code @Indexed} and {@code @CompoundIndex} on the documents
+ * once the application is up.
+ * createIndexes is a no-op for indexes that already exist, so this is safe on every start.
+ * Indexes that were replaced by owner-scoped compound ones are dropped first; the old unique
+ * index on category names would otherwise stop two owners from using the same name.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IndexProvisioner {
+    
+    private static final List<Class<?>> INDEXED_DOCUMENTS =
+            List.of(Habit.class, HabitCategory.class, HabitStack.class, ProgressData.class);
+    
+    private static final Map<Class<?>, List<String>> OBSOLETE_INDEXES = Map.of(
+            Habit.class, List.of("name", "category"),
+            HabitCategory.class, List.of("name"),
+            HabitStack.class, List.of("name"));
+    
+    private final MongoTemplate mongoTemplate;
+    private final MongoMappingContext mappingContext;
+    private final QueryPlanVerifier queryPlanVerifier;
+    private final TaskExecutor taskExecutor;
+    
+    @Value("${habitstack.indexes.verify-plans:false}")
+    private boolean verifyPlans;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (verifyPlans) {
+            // Verification needs the indexes in place and must be able to fail startup
+            ensureIndexes();
+            queryPlanVerifier.verify();
+        } else {
+            taskExecutor.execute(this::ensureIndexes);
+        }
+    }
+    
+    public void ensureIndexes() {
+        dropObsoleteIndexes();
+        IndexResolver resolver = IndexResolver.create(mappingContext);
+        for (Class<?> type : INDEXED_DOCUMENTS) {
+            IndexOperations indexOps = mongoTemplate.indexOps(type);
+            for (IndexDefinition index : resolver.resolveIndexFor(type)) {
+                try {
+                    String name = indexOps.ensureIndex(index);
+                    log.info("Ensured index {} on {}", name, mongoTemplate.getCollectionName(type));
+                } catch (DataAccessException e) {
+                    // Typically existing duplicates blocking a unique index; keep the app serving
+                    log.error("Failed to create index {} on {}: {}", index.getIndexKeys(),
+                            mongoTemplate.getCollectionName(type), e.getMessage(), e);
+                }
+            }
+        }
+    }
+    
+    private void dropObsoleteIndexes() {
+        OBSOLETE_INDEXES.forEach((type, names) -> {
+            IndexOperations indexOps = mongoTemplate.indexOps(type);
+            indexOps.getIndexInfo().stream()
+                    .filter(index -> names.contains(index.getName()))
+                    .forEach(index -> {
+                        indexOps.dropIndex(index.getName());
+                        log.info("Dropped obsolete index {} on {}", index.getName(), mongoTemplate.getCollectionName(type));
+                    });
+        });
+    }
+}
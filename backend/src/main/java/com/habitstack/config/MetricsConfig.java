@@ -0,0 +1,26 @@
+package com.habitstack.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Metrics wiring on top of the actuator defaults. Spring Boot already times every Mongo command
+ * (mongodb.driver.commands) and gauges the connection pool (mongodb.driver.pool.*); this adds the
+ * aspect behind the @Timed service metrics and per-command document counts.
+ */
+@Configuration
+public class MetricsConfig {
+    
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+    
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoDocumentMetrics(MeterRegistry meterRegistry) {
+        return settings -> settings.addCommandListener(new MongoDocumentMetrics(meterRegistry));
+    }
+}
@@ -0,0 +1,109 @@
+package com.habitstack.config;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records how many documents each Mongo command returned or wrote, tagged by command and
+ * collection (mongodb.driver.commands.documents). Latency per command and collection is
+ * already recorded by Spring Boot's own command listener.
+ */
+class MongoDocumentMetrics implements CommandListener {
+    
+    private static final String METRIC_NAME = "mongodb.driver.commands.documents";
+    
+    private record InFlight(String command, String collection) {
+    }
+    
+    private final MeterRegistry meterRegistry;
+    
+    // Success events do not carry the command document, so the collection is remembered per request
+    private final Map<Integer, InFlight> inFlight = new ConcurrentHashMap<>();
+    
+    MongoDocumentMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+    
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        String collection = collectionOf(event.getCommandName(), event.getCommand());
+        if (collection != null) {
+            inFlight.put(event.getRequestId(), new InFlight(event.getCommandName(), collection));
+        }
+    }
+    
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        InFlight started = inFlight.remove(event.getRequestId());
+        if (started == null) {
+            return;
+        }
+        long documents = documentsIn(started.command(), event.getResponse());
+        if (documents >= 0) {
+            DistributionSummary.builder(METRIC_NAME)
+                    .description("Documents returned or written per Mongo command")
+                    .baseUnit("documents")
+                    .tag("command", started.command())
+                    .tag("collection", started.collection())
+                    .register(meterRegistry)
+                    .record(documents);
+        }
+    }
+    
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        inFlight.remove(event.getRequestId());
+    }
+    
+    private static String collectionOf(String commandName, BsonDocument command) {
+        if ("getMore".equals(commandName)) {
+            BsonValue collection = command.get("collection");
+            return collection != null && collection.isString() ? collection.asString().getValue() : null;
+        }
+        BsonValue target = command.get(commandName);
+        return target != null && target.isString() ? target.asString().getValue() : null;
+    }
+    
+    /**
+     * Document count for the commands the application issues, or -1 for anything else
+     * (createIndexes, explain, ...).
+     */
+    private static long documentsIn(String commandName, BsonDocument response) {
+        switch (commandName) {
+            case "find":
+            case "aggregate":
+                return batchSize(response, "firstBatch");
+            case "getMore":
+                return batchSize(response, "nextBatch");
+            case "findAndModify":
+                BsonValue value = response.get("value");
+                return value != null && value.isDocument() ? 1 : 0;
+            case "insert":
+            case "update":
+            case "delete":
+            case "count":
+                BsonValue n = response.get("n");
+                return n != null && n.isNumber() ? n.asNumber().longValue() : 0;
+            default:
+                return -1;
+        }
+    }
+    
+    private static long batchSize(BsonDocument response, String field) {
+        BsonValue cursor = response.get("cursor");
+        if (cursor == null || !cursor.isDocument()) {
+            return 0;
+        }
+        BsonValue batch = cursor.asDocument().get(field);
+        return batch != null && batch.isArray() ? batch.asArray().size() : 0;
+    }
+}
@@ -0,0 +1,44 @@
+package com.habitstack.config;
+
+import com.habitstack.model.Habit;
+import com.habitstack.model.HabitCategory;
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.Owners;
+import com.habitstack.model.ProgressData;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Hands documents written before owners existed to {@link Owners#DEFAULT}, which is also the
+ * owner of requests that do not name one, so existing single-user deployments keep their data.
+ * Runs before the web server starts taking requests.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OwnerBackfill implements SmartInitializingSingleton {
+    
+    private static final List<Class<?>> OWNED_DOCUMENTS =
+            List.of(Habit.class, HabitCategory.class, HabitStack.class, ProgressData.class);
+    
+    private final MongoTemplate mongoTemplate;
+    
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (Class<?> type : OWNED_DOCUMENTS) {
+            long updated = mongoTemplate.updateMulti(Query.query(Criteria.where(Owners.FIELD).exists(false)),
+                    new Update().set(Owners.FIELD, Owners.DEFAULT), type).getModifiedCount();
+            if (updated > 0) {
+                log.info("Assigned {} {} documents to the default owner", updated, mongoTemplate.getCollectionName(type));
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.habitstack.config;
+
+import com.habitstack.model.Habit;
+import com.habitstack.model.HabitCategory;
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.Owners;
+import com.habitstack.model.ProgressData;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs {@code explain} for the filter of every derived repository query and fails when
+ * the winning plan contains a COLLSCAN, or an IXSCAN whose leading field is unbounded: such a
+ * scan walks every key of the index, which is no better than reading the collection. Enabled
+ * with {@code habitstack.indexes.verify-plans}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class QueryPlanVerifier {
+    
+    private static final String SAMPLE = "plan-check";
+    private static final String UNBOUNDED = "[MinKey, MaxKey]";
+    
+    private final MongoTemplate mongoTemplate;
+    
+    public void verify() {
+        List<String> fullScans = new ArrayList<>();
+        
+        derivedQueries().forEach((method, query) -> {
+            Document explain = mongoTemplate.getDb().runCommand(new Document("explain",
+                    new Document("find", query.collection()).append("filter", query.filter()))
+                    .append("verbosity", "queryPlanner"));
+            
+            Object winningPlan = ((Document) explain.get("queryPlanner")).get("winningPlan");
+            if (containsStage(winningPlan, "COLLSCAN")) {
+                log.error("Query plan for {} uses COLLSCAN: {}", method, winningPlan);
+                fullScans.add(method);
+            } else if (hasUnboundedIndexScan(winningPlan)) {
+                log.error("Query plan for {} scans a whole index: {}", method, winningPlan);
+                fullScans.add(method);
+            } else {
+                log.info("Query plan for {} is index-backed", method);
+            }
+        });
+        
+        if (!fullScans.isEmpty()) {
+            throw new IllegalStateException("Repository queries fall back to COLLSCAN or a full index scan: " + fullScans);
+        }
+    }
+    
+    private Map<String, PlannedQuery> derivedQueries() {
+        String habits = mongoTemplate.getCollectionName(Habit.class);
+        String categories = mongoTemplate.getCollectionName(HabitCategory.class);
+        String stacks = mongoTemplate.getCollectionName(HabitStack.class);
+        String progress = mongoTemplate.getCollectionName(ProgressData.class);
+        Document containsIgnoreCase = new Document("$regex", SAMPLE).append("$options", "i");
+        
+        Map<String, PlannedQuery> queries = new LinkedHashMap<>();
+        queries.put("HabitRepository.findByOwnerId / findByOwnerIdAndIdIn",
+                new PlannedQuery(habits, owned()));
+        queries.put("HabitRepository.findByOwnerIdAndCategory",
+                new PlannedQuery(habits, owned().append("category", SAMPLE)));
+        queries.put("HabitRepository.findByOwnerIdAndNameContainingIgnoreCase",
+                new PlannedQuery(habits, owned().append("name", containsIgnoreCase)));
+        queries.put("HabitRepository.findByOwnerIdAndCategoryAndNameContainingIgnoreCase",
+                new PlannedQuery(habits, owned().append("category", SAMPLE).append("name", containsIgnoreCase)));
+        queries.put("HabitRepository.existsByOwnerIdAndName",
+                new PlannedQuery(habits, owned().append("name", SAMPLE)));
+        queries.put("HabitCategoryRepository.findByOwnerId",
+                new PlannedQuery(categories, owned()));
+        queries.put("HabitCategoryRepository.findByOwnerIdAndName / existsByOwnerIdAndName",
+                new PlannedQuery(categories, owned().append("name", SAMPLE)));
+        queries.put("HabitStackRepository.findByOwnerId / findByOwnerIdAndIdIn",
+                new PlannedQuery(stacks, owned()));
+        queries.put("HabitStackRepository.findByOwnerIdAndNameContainingIgnoreCase",
+                new PlannedQuery(stacks, owned().append("name", containsIgnoreCase)));
+        queries.put("HabitStackRepository.existsByOwnerIdAndName",
+                new PlannedQuery(stacks, owned().append("name", SAMPLE)));
+        queries.put("HabitStackRepository.removeHabit",
+                new PlannedQuery(stacks, owned().append("habits.habitId", SAMPLE)));
+        queries.put("ProgressDataRepository.findByOwnerId",
+                new PlannedQuery(progress, owned()));
+        queries.put("ProgressDataRepository.findByOwnerIdAndStackId",
+                new PlannedQuery(progress, owned().append("stack_id", SAMPLE)));
+        return queries;
+    }
+    
+    private static Document owned() {
+        return new Document(Owners.FIELD, SAMPLE);
+    }
+    
+    private static boolean containsStage(Object plan, String stage) {
+        if (plan instanceof Document document) {
+            if (stage.equals(document.get("stage"))) {
+                return true;
+            }
+            return document.values().stream().anyMatch(value -> containsStage(value, stage));
+        }
+        if (plan instanceof List<?> list) {
+            return list.stream().anyMatch(value -> containsStage(value, stage));
+        }
+        return false;
+    }
+    
+    // The leading field is the one every query here filters on; when its bounds are open the scan
+    // reads the keys of all owners
+    private static boolean hasUnboundedIndexScan(Object plan) {
+        if (plan instanceof Document document) {
+            if ("IXSCAN".equals(document.get("stage"))) {
+                Document keyPattern = (Document) document.get("keyPattern");
+                Document indexBounds = (Document) document.get("indexBounds");
+                String leadingField = keyPattern.keySet().iterator().next();
+                if (indexBounds != null && List.of(UNBOUNDED).equals(indexBounds.get(leadingField))) {
+                    return true;
+                }
+            }
+            return document.values().stream().anyMatch(QueryPlanVerifier::hasUnboundedIndexScan);
+        }
+        if (plan instanceof List<?> list) {
+            return list.stream().anyMatch(QueryPlanVerifier::hasUnboundedIndexScan);
+        }
+        return false;
+    }
+    
+    private record PlannedQuery(String collection, Document filter) {
+    }
+}
@@ -0,0 +1,41 @@
+package com.habitstack.config;
+
+import com.habitstack.model.Habit;
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.ProgressData;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Gives documents written before @Version existed a version of 0. Spring Data treats an entity
+ * with a null version as new and would insert it on save, failing with a duplicate key, so this
+ * runs before the web server starts taking requests.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VersionBackfill implements SmartInitializingSingleton {
+    
+    private static final List<Class<?>> VERSIONED_DOCUMENTS = List.of(Habit.class, HabitStack.class, ProgressData.class);
+    
+    private final MongoTemplate mongoTemplate;
+    
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (Class<?> type : VERSIONED_DOCUMENTS) {
+            long updated = mongoTemplate.updateMulti(Query.query(Criteria.where("version").exists(false)),
+                    new Update().set("version", 0L), type).getModifiedCount();
+            if (updated > 0) {
+                log.info("Initialised version on {} {} documents", updated, mongoTemplate.getCollectionName(type));
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.habitstack.controller;
+
+import com.habitstack.dto.DashboardResponse;
+import com.habitstack.model.Owners;
+import com.habitstack.repository.KeysetQueries;
+import com.habitstack.service.DashboardService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@Slf4j
+@RestController
+@Profile("!reactive")
+@CrossOrigin(origins = "https://chain-habits.preview.emergentagent.com")
+@RequestMapping("/dashboard")
+@RequiredArgsConstructor
+public class DashboardController {
+    
+    private final DashboardService dashboardService;
+    
+    @GetMapping
+    public ResponseEntity<DashboardResponse> getDashboard(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + KeysetQueries.DEFAULT_LIMIT) int limit,
+            @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        log.debug("GET /dashboard - Fetching dashboard");
+        DashboardResponse dashboard = dashboardService.getDashboard(ownerId, after, limit);
+        log.debug("GET /dashboard - Successfully returned {} stacks", dashboard.getItems().size());
+        return ResponseEntity.ok(dashboard);
+    }
+}
@@ -0,0 +1,59 @@
+package com.habitstack.controller;
+
+import com.habitstack.exception.ValidationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Strong ETags derived from a document's @Version, e.g. {@code "7"}.
+ */
+final class ETags {
+    
+    private ETags() {
+    }
+    
+    static String of(Long version) {
+        return version != null ? "\"" + version + "\"" : null;
+    }
+    
+    /**
+     * True if an If-None-Match header lists the given version (or is {@code *}).
+     */
+    static boolean matches(String ifNoneMatch, long version) {
+        String etag = of(version);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    static <T> ResponseEntity<T> notModified(long version) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(of(version)).build();
+    }
+    
+    /**
+     * The version an If-Match header requires, or null when the header is absent or {@code *}.
+     * Weak validators are rejected because If-Match needs strong comparison.
+     */
+    static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String value = ifMatch.trim();
+        if (value.length() < 3 || !value.startsWith("\"") || !value.endsWith("\"")) {
+            throw new ValidationException(HttpHeaders.IF_MATCH, "must be a single strong ETag such as \"3\"");
+        }
+        try {
+            return Long.parseLong(value.substring(1, value.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new ValidationException(HttpHeaders.IF_MATCH, "does not name a version of this resource");
+        }
+    }
+}
@@ -1,19 +1,32 @@
 package com.habitstack.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.habitstack.dto.ImportReport;
 import com.habitstack.model.HabitCategory;
+import com.habitstack.model.Owners;
+import com.habitstack.repository.FieldSelection;
+import com.habitstack.service.CategoryCache;
 import com.habitstack.service.HabitCategoryService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @RestController
+@Profile("!reactive")
 @CrossOrigin(origins = "https://chain-habits.preview.emergentagent.com")
 @RequestMapping("/categories")
 @Validated
@@ -22,44 +35,78 @@ import java.util.List;
 public class HabitCategoryController {
     
     private final HabitCategoryService categoryService;
+    private final ObjectMapper objectMapper;
     
     @GetMapping
-    public ResponseEntity<List<HabitCategory>> getAllCategories() {
-        log.info("GET /categories - Fetching all categories");
-        List<HabitCategory> categories = categoryService.getAllCategories();
-        log.info("GET /categories - Successfully returned {} categories", categories.size());
-        return ResponseEntity.ok(categories);
+    public ResponseEntity<?> getAllCategories(@RequestParam(required = false) String fields,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                              @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        log.debug("GET /categories - Fetching all categories");
+        FieldSelection selection = FieldSelection.of(HabitCategory.class, fields);
+        if (selection == null && NdjsonStreams.isRequested(accept)) {
+            return NdjsonStreams.of(objectMapper, () -> categoryService.streamCategories(ownerId));
+        }
+        CategoryCache.CategoryList categories = categoryService.getCategoryList(ownerId);
+        log.debug("GET /categories - Successfully returned {} categories", categories.categories().size());
+        // With an ETag set, a matching If-None-Match is answered with 304 and no body
+        return ResponseEntity.ok()
+                .eTag(categories.etag())
+                .cacheControl(CacheControl.noCache())
+                .body(selection != null ? select(selection, categories.categories()) : categories.categories());
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<HabitCategory> getCategoryById(@PathVariable String id) {
-        log.info("GET /categories/{} - Fetching category by ID", id);
-        HabitCategory category = categoryService.getCategoryById(id);
-        log.info("GET /categories/{} - Successfully returned category", id);
-        return ResponseEntity.ok(category);
+    public ResponseEntity<?> getCategoryById(@PathVariable String id,
+                                             @RequestParam(required = false) String fields,
+                                             @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        log.debug("GET /categories/{} - Fetching category by ID", id);
+        FieldSelection selection = FieldSelection.of(HabitCategory.class, fields);
+        HabitCategory category = categoryService.getCategoryById(ownerId, id);
+        log.debug("GET /categories/{} - Successfully returned category", id);
+        return ResponseEntity.ok(selection != null ? selection.fromEntity(objectMapper, category) : category);
+    }
+    
+    // Categories are served from CategoryCache, so fields are picked from the cached entities
+    // rather than projected in Mongo
+    private List<Map<String, Object>> select(FieldSelection selection, List<HabitCategory> categories) {
+        return categories.stream()
+                .map(category -> selection.fromEntity(objectMapper, category))
+                .toList();
     }
     
     @PostMapping
-    public ResponseEntity<HabitCategory> createCategory(@Valid @RequestBody HabitCategory category) {
+    public ResponseEntity<HabitCategory> createCategory(@Valid @RequestBody HabitCategory category,
+                                                        @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
         log.info("POST /categories - Creating new category: {}", category.getName());
-        HabitCategory createdCategory = categoryService.createCategory(category);
+        HabitCategory createdCategory = categoryService.createCategory(ownerId, category);
         log.info("POST /categories - Successfully created category with ID: {}", createdCategory.getId());
         return ResponseEntity.status(HttpStatus.CREATED).body(createdCategory);
     }
     
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ImportReport> importCategories(InputStream body,
+                                                         @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) throws IOException {
+        log.info("POST /categories/import - Importing categories");
+        ImportReport report = categoryService.importCategories(ownerId, body);
+        log.info("POST /categories/import - Inserted {} categories, {} failed", report.getInserted(), report.getFailed());
+        return ResponseEntity.ok(report);
+    }
+    
     @PutMapping("/{id}")
     public ResponseEntity<HabitCategory> updateCategory(@PathVariable String id, 
-                                                      @Valid @RequestBody HabitCategory categoryDetails) {
+                                                      @Valid @RequestBody HabitCategory categoryDetails,
+                                                      @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
         log.info("PUT /categories/{} - Updating category", id);
-        HabitCategory updatedCategory = categoryService.updateCategory(id, categoryDetails);
+        HabitCategory updatedCategory = categoryService.updateCategory(ownerId, id, categoryDetails);
         log.info("PUT /categories/{} - Successfully updated category", id);
         return ResponseEntity.ok(updatedCategory);
     }
     
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteCategory(@PathVariable String id) {
+    public ResponseEntity<Void> deleteCategory(@PathVariable String id,
+                                               @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
         log.info("DELETE /categories/{} - Deleting category", id);
-        categoryService.deleteCategory(id);
+        categoryService.deleteCategory(ownerId, id);
         log.info("DELETE /categories/{} - Successfully deleted category", id);
         return ResponseEntity.ok().build();
     }
@@ -1,18 +1,30 @@
 package com.habitstack.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.habitstack.dto.ImportReport;
+import com.habitstack.dto.SearchSuggestion;
 import com.habitstack.model.Habit;
+import com.habitstack.model.Owners;
+import com.habitstack.repository.FieldSelection;
+import com.habitstack.repository.KeysetQueries;
 import com.habitstack.service.HabitService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 
 @RestController
+@Profile("!reactive")
 @CrossOrigin(origins = "https://chain-habits.preview.emergentagent.com")
 @RequestMapping("/habits")
 @Validated
@@ -21,62 +33,122 @@ public class HabitController {
     @Autowired
     private HabitService habitService;
     
+    @Autowired
+    private ObjectMapper objectMapper;
+    
     @GetMapping
-    public ResponseEntity<List<Habit>> getAllHabits(
+    public ResponseEntity<?> getAllHabits(
             @RequestParam(required = false) String category,
-            @RequestParam(required = false) String search) {
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        
+        FieldSelection selection = FieldSelection.of(Habit.class, fields);
+        if (selection != null) {
+            if (search != null) {
+                List<Habit> found = category != null
+                        ? habitService.searchHabitsByCategory(ownerId, category, search) : habitService.searchHabits(ownerId, search);
+                return ResponseEntity.ok(found.stream().map(habit -> selection.fromEntity(objectMapper, habit)).toList());
+            }
+            if (limit != null || after != null) {
+                return ResponseEntity.ok(habitService.getHabitFieldsPage(ownerId, category, selection, after,
+                        limit != null ? limit : KeysetQueries.DEFAULT_LIMIT));
+            }
+            return ResponseEntity.ok(habitService.getHabitFields(ownerId, category, selection));
+        }
+        
+        if (search == null) {
+            if (NdjsonStreams.isRequested(accept)) {
+                return NdjsonStreams.of(objectMapper, () -> habitService.streamHabits(ownerId, category, after));
+            }
+            if (limit != null || after != null) {
+                return ResponseEntity.ok(habitService.getHabitsPage(ownerId, category, after,
+                        limit != null ? limit : KeysetQueries.DEFAULT_LIMIT));
+            }
+        }
         
         List<Habit> habits;
         
         if (category != null && search != null) {
-            habits = habitService.searchHabitsByCategory(category, search);
+            habits = habitService.searchHabitsByCategory(ownerId, category, search);
         } else if (category != null) {
-            habits = habitService.getHabitsByCategory(category);
+            habits = habitService.getHabitsByCategory(ownerId, category);
         } else if (search != null) {
-            habits = habitService.searchHabits(search);
+            habits = habitService.searchHabits(ownerId, search);
         } else {
-            habits = habitService.getAllHabits();
+            habits = habitService.getAllHabits(ownerId);
         }
-        System.out.println(habits + "habits test");
         return ResponseEntity.ok(habits);
     }
     
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<SearchSuggestion>> autocompleteHabits(
+            @RequestParam("q") String prefix,
+            @RequestParam(required = false) String category,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        return ResponseEntity.ok(habitService.autocompleteHabits(ownerId, prefix, category, Math.max(1, Math.min(limit, 50))));
+    }
+    
     @GetMapping("/{id}")
-    public ResponseEntity<Habit> getHabitById(@PathVariable String id) {
+    public ResponseEntity<?> getHabitById(@PathVariable String id,
+                                          @RequestParam(required = false) String fields,
+                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                          @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        FieldSelection selection = FieldSelection.of(Habit.class, fields);
         try {
-            Habit habit = habitService.getHabitById(id);
-            return ResponseEntity.ok(habit);
+            if (selection != null) {
+                return ResponseEntity.ok(habitService.getHabitFieldsById(ownerId, id, selection));
+            }
+            if (ifNoneMatch != null) {
+                Optional<Long> version = habitService.getHabitVersion(ownerId, id);
+                if (version.isPresent() && ETags.matches(ifNoneMatch, version.get())) {
+                    return ETags.notModified(version.get());
+                }
+            }
+            Habit habit = habitService.getHabitById(ownerId, id);
+            return ResponseEntity.ok().eTag(ETags.of(habit.getVersion())).body(habit);
         } catch (Exception e) {
             return ResponseEntity.notFound().build();
         }
     }
     
     @PostMapping
-    public ResponseEntity<Habit> createHabit(@Valid @RequestBody Habit habit) {
+    public ResponseEntity<Habit> createHabit(@Valid @RequestBody Habit habit,
+                                             @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
         try {
-            Habit createdHabit = habitService.createHabit(habit);
+            Habit createdHabit = habitService.createHabit(ownerId, habit);
             return ResponseEntity.status(HttpStatus.CREATED).body(createdHabit);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
     
+    // One habit per line; invalid or duplicate records are reported without failing the rest
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ImportReport> importHabits(InputStream body,
+                                                     @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) throws IOException {
+        return ResponseEntity.ok(habitService.importHabits(ownerId, body));
+    }
+    
     @PutMapping("/{id}")
     public ResponseEntity<Habit> updateHabit(@PathVariable String id, 
-                                           @Valid @RequestBody Habit habitDetails) {
-        try {
-            Habit updatedHabit = habitService.updateHabit(id, habitDetails);
-            return updatedHabit != null ? ResponseEntity.ok(updatedHabit) 
-                    : ResponseEntity.notFound().build();
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+                                           @Valid @RequestBody Habit habitDetails,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                           @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        // Not-found, failed preconditions and concurrent edits are mapped by GlobalExceptionHandler
+        Habit updatedHabit = habitService.updateHabit(ownerId, id, habitDetails, ETags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok().eTag(ETags.of(updatedHabit.getVersion())).body(updatedHabit);
     }
     
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteHabit(@PathVariable String id) {
+    public ResponseEntity<Void> deleteHabit(@PathVariable String id,
+                                            @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
         try {
-            boolean deleted = habitService.deleteHabit(id);
+            boolean deleted = habitService.deleteHabit(ownerId, id);
             if(deleted){
                 return ResponseEntity.ok().build();
             }else{
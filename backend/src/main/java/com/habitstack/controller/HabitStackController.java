@@ -1,70 +1,213 @@
 package com.habitstack.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.habitstack.dto.CursorPage;
+import com.habitstack.dto.ImportReport;
+import com.habitstack.dto.SearchSuggestion;
+import com.habitstack.dto.StackBatchRequest;
+import com.habitstack.dto.StackBatchResponse;
+import com.habitstack.dto.StackSummary;
+import com.habitstack.exception.ValidationException;
 import com.habitstack.model.HabitStack;
+import com.habitstack.model.Owners;
+import com.habitstack.repository.FieldSelection;
+import com.habitstack.repository.KeysetQueries;
 import com.habitstack.service.HabitStackService;
+import com.habitstack.service.StackEventStream;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @RestController
+@Profile("!reactive")
 @CrossOrigin(origins = "https://chain-habits.preview.emergentagent.com")
 @RequestMapping("/stacks")
 @Validated
 public class HabitStackController {
     
+    private static final String SUMMARY_VIEW = "summary";
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+    
     @Autowired
     private HabitStackService stackService;
     
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private StackEventStream stackEventStream;
+    
+    // Clients reconnect with Last-Event-ID, so this only bounds how long one connection lives
+    @Value("${habitstack.events.timeout:PT30M}")
+    private Duration eventsTimeout;
+    
     @GetMapping
-    public ResponseEntity<List<HabitStack>> getAllStacks(
-            @RequestParam(required = false) String search) {
+    public ResponseEntity<?> getAllStacks(
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String expand,
+            @RequestParam(required = false) String view,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        
+        FieldSelection selection = selectFields(fields, view, expand);
+        if (selection != null) {
+            if (search != null) {
+                return ResponseEntity.ok(stackService.searchStacks(ownerId, search).stream()
+                        .map(stack -> selection.fromEntity(objectMapper, stack))
+                        .toList());
+            }
+            if (limit != null || after != null) {
+                return ResponseEntity.ok(stackService.getStackFieldsPage(ownerId, selection, after,
+                        limit != null ? limit : KeysetQueries.DEFAULT_LIMIT));
+            }
+            return ResponseEntity.ok(stackService.getStackFields(ownerId, selection));
+        }
+        
+        if (view != null) {
+            if (!SUMMARY_VIEW.equals(view)) {
+                throw new ValidationException("view", "must be '" + SUMMARY_VIEW + "'");
+            }
+            if (search != null) {
+                return ResponseEntity.ok(stackService.searchStacks(ownerId, search).stream().map(StackSummary::of).toList());
+            }
+            if (limit != null || after != null) {
+                return ResponseEntity.ok(stackService.getStackSummariesPage(ownerId, after,
+                        limit != null ? limit : KeysetQueries.DEFAULT_LIMIT));
+            }
+            return ResponseEntity.ok(stackService.getStackSummaries(ownerId));
+        }
+        
+        if (search == null) {
+            if (NdjsonStreams.isRequested(accept)) {
+                return NdjsonStreams.of(objectMapper, () -> stackService.streamStacks(ownerId, after));
+            }
+            if (limit != null || after != null) {
+                CursorPage<HabitStack> page = stackService.getStacksPage(ownerId, after,
+                        limit != null ? limit : KeysetQueries.DEFAULT_LIMIT);
+                if (expandsHabits(expand)) {
+                    stackService.expandHabits(ownerId, page.getItems());
+                }
+                return ResponseEntity.ok(page);
+            }
+        }
         
         List<HabitStack> stacks = search != null ? 
-                stackService.searchStacks(search) : stackService.getAllStacks();
+                stackService.searchStacks(ownerId, search) : stackService.getAllStacks(ownerId);
         
+        if (expandsHabits(expand)) {
+            stackService.expandHabits(ownerId, stacks);
+        }
         return ResponseEntity.ok(stacks);
     }
     
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<SearchSuggestion>> autocompleteStacks(
+            @RequestParam("q") String prefix,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        return ResponseEntity.ok(stackService.autocompleteStacks(ownerId, prefix, Math.max(1, Math.min(limit, 50))));
+    }
+    
+    /**
+     * Server-sent changes to the owner's stacks and their progress, optionally only those of the
+     * given stack ids. A client reconnecting with Last-Event-ID receives what it missed.
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(
+            @RequestParam(required = false) Set<String> stackId,
+            @RequestHeader(value = LAST_EVENT_ID, required = false) String lastEventId,
+            @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        StackEventEmitter emitter = new StackEventEmitter(eventsTimeout.toMillis());
+        emitter.cancelOnEnd(stackEventStream.subscribe(ownerId, stackId != null ? stackId : Set.of(), lastEventId, emitter));
+        return emitter;
+    }
+    
     @GetMapping("/{id}")
-    public ResponseEntity<HabitStack> getStackById(@PathVariable String id) {
-        Optional<HabitStack> stack = stackService.getStackById(id);
-        return stack.map(ResponseEntity::ok)
+    public ResponseEntity<?> getStackById(@PathVariable String id,
+                                          @RequestParam(required = false) String expand,
+                                          @RequestParam(required = false) String fields,
+                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                          @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        FieldSelection selection = selectFields(fields, null, expand);
+        if (selection != null) {
+            return stackService.getStackFieldsById(ownerId, id, selection)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        }
+        
+        // Expanded habits change independently of the stack's version, so those responses carry no ETag
+        if (expandsHabits(expand)) {
+            Optional<HabitStack> stack = stackService.getStackById(ownerId, id);
+            stack.ifPresent(found -> stackService.expandHabits(ownerId, List.of(found)));
+            return stack.<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        }
+        
+        if (ifNoneMatch != null) {
+            Optional<Long> version = stackService.getStackVersion(ownerId, id);
+            if (version.isPresent() && ETags.matches(ifNoneMatch, version.get())) {
+                return ETags.notModified(version.get());
+            }
+        }
+        return stackService.getStackById(ownerId, id)
+                .<ResponseEntity<?>>map(stack -> ResponseEntity.ok().eTag(ETags.of(stack.getVersion())).body(stack))
                 .orElse(ResponseEntity.notFound().build());
     }
     
     @PostMapping
-    public ResponseEntity<HabitStack> createStack(@Valid @RequestBody HabitStack stack) {
+    public ResponseEntity<HabitStack> createStack(@Valid @RequestBody HabitStack stack,
+                                                  @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
         try {
-            HabitStack createdStack = stackService.createStack(stack);
+            HabitStack createdStack = stackService.createStack(ownerId, stack);
             return ResponseEntity.status(HttpStatus.CREATED).body(createdStack);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
     
+    // One stack per line; invalid or duplicate records are reported without failing the rest
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ImportReport> importStacks(InputStream body,
+                                                     @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) throws IOException {
+        return ResponseEntity.ok(stackService.importStacks(ownerId, body));
+    }
+    
     @PutMapping("/{id}")
     public ResponseEntity<HabitStack> updateStack(@PathVariable String id, 
-                                                @Valid @RequestBody HabitStack stackDetails) {
-        try {
-            HabitStack updatedStack = stackService.updateStack(id, stackDetails);
-            return updatedStack != null ? ResponseEntity.ok(updatedStack) 
-                    : ResponseEntity.notFound().build();
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+                                                @Valid @RequestBody HabitStack stackDetails,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        // Failed preconditions and concurrent edits are mapped by GlobalExceptionHandler
+        HabitStack updatedStack = stackService.updateStack(ownerId, id, stackDetails, ETags.parseIfMatch(ifMatch));
+        return updatedStack != null ? ResponseEntity.ok().eTag(ETags.of(updatedStack.getVersion())).body(updatedStack)
+                : ResponseEntity.notFound().build();
     }
     
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteStack(@PathVariable String id) {
+    public ResponseEntity<Void> deleteStack(@PathVariable String id,
+                                            @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
         try {
-            boolean deleted = stackService.deleteStack(id);
+            boolean deleted = stackService.deleteStack(ownerId, id);
             return deleted ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -73,14 +216,13 @@ public class HabitStackController {
     
     @PostMapping("/toggle-habit")
     public ResponseEntity<Map<String, String>> toggleHabitCompletion(
-            @RequestBody Map<String, String> request) {
+            @RequestBody Map<String, String> request,
+            @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
         try {
             String stackId = request.get("stack_id");
             String habitId = request.get("habit_id");
-
-            System.out.println(stackId  + " stackid" + habitId + " habitId");
             
-            HabitStack updatedStack = stackService.toggleHabitCompletion(stackId, habitId);
+            HabitStack updatedStack = stackService.toggleHabitCompletion(ownerId, stackId, habitId);
             
             if (updatedStack != null) {
                 return ResponseEntity.ok(Map.of("message", "Habit completion toggled successfully"));
@@ -92,4 +234,23 @@ public class HabitStackController {
                     .body(Map.of("error", "Failed to toggle habit completion"));
         }
     }
+    
+    @PostMapping("/batch")
+    public ResponseEntity<StackBatchResponse> applyBatch(@Valid @RequestBody StackBatchRequest request,
+                                                         @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        return ResponseEntity.ok(stackService.applyBatch(ownerId, request.getOperations()));
+    }
+    
+    // Sparse fieldsets come straight from a projection, so they cannot be expanded or summarised
+    private static FieldSelection selectFields(String fields, String view, String expand) {
+        FieldSelection selection = FieldSelection.of(HabitStack.class, fields);
+        if (selection != null && (view != null || expand != null)) {
+            throw new ValidationException("fields", "cannot be combined with view or expand");
+        }
+        return selection;
+    }
+    
+    private static boolean expandsHabits(String expand) {
+        return expand != null && Arrays.asList(expand.split(",")).contains("habits");
+    }
 }
\ No newline at end of file
@@ -1,8 +1,14 @@
 package com.habitstack.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.habitstack.model.Owners;
 import com.habitstack.model.ProgressData;
+import com.habitstack.repository.FieldSelection;
+import com.habitstack.repository.KeysetQueries;
 import com.habitstack.service.ProgressDataService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -10,9 +16,11 @@ import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
+@Profile("!reactive")
 @CrossOrigin(origins = "https://chain-habits.preview.emergentagent.com")
 @RequestMapping("/progress")
 @Validated
@@ -22,42 +30,79 @@ public class ProgressDataController {
     @Autowired
     private ProgressDataService progressService;
     
+    @Autowired
+    private ObjectMapper objectMapper;
+    
     @GetMapping
-    public ResponseEntity<List<ProgressData>> getAllProgress() {
-        List<ProgressData> progressList = progressService.getAllProgress();
+    public ResponseEntity<?> getAllProgress(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        FieldSelection selection = FieldSelection.of(ProgressData.class, fields);
+        if (selection != null) {
+            if (limit != null || after != null) {
+                return ResponseEntity.ok(progressService.getProgressFieldsPage(ownerId, selection, after,
+                        limit != null ? limit : KeysetQueries.DEFAULT_LIMIT));
+            }
+            return ResponseEntity.ok(progressService.getProgressFields(ownerId, selection));
+        }
+        if (NdjsonStreams.isRequested(accept)) {
+            return NdjsonStreams.of(objectMapper, () -> progressService.streamProgress(ownerId, after));
+        }
+        if (limit != null || after != null) {
+            return ResponseEntity.ok(progressService.getProgressPage(ownerId, after,
+                    limit != null ? limit : KeysetQueries.DEFAULT_LIMIT));
+        }
+        
+        List<ProgressData> progressList = progressService.getAllProgress(ownerId);
         return ResponseEntity.ok(progressList);
     }
     
     @GetMapping("/{stackId}")
-    public ResponseEntity<ProgressData> getProgressByStackId(@PathVariable String stackId) {
-        Optional<ProgressData> progress = progressService.getProgressByStackId(stackId);
+    public ResponseEntity<?> getProgressByStackId(@PathVariable String stackId,
+                                                  @RequestParam(required = false) String fields,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                  @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        FieldSelection selection = FieldSelection.of(ProgressData.class, fields);
+        if (selection != null) {
+            Optional<Map<String, Object>> projected = progressService.getProgressFieldsByStackId(ownerId, stackId, selection);
+            if (projected.isPresent()) {
+                return ResponseEntity.ok(projected.get());
+            }
+        }
         
-        if (progress.isPresent()) {
-            return ResponseEntity.ok(progress.get());
-        } else {
-            // Create default progress data if it doesn't exist
-            ProgressData defaultProgress = new ProgressData(stackId);
-            ProgressData createdProgress = progressService.createOrUpdateProgress(defaultProgress);
-            return ResponseEntity.ok(createdProgress);
+        if (selection == null && ifNoneMatch != null) {
+            Optional<Long> version = progressService.getProgressVersion(ownerId, stackId);
+            if (version.isPresent() && ETags.matches(ifNoneMatch, version.get())) {
+                return ETags.notModified(version.get());
+            }
         }
+        
+        // Nothing is stored until the first write; a default has no version and so no ETag
+        ProgressData progress = progressService.getProgressOrDefault(ownerId, stackId);
+        if (selection != null) {
+            return ResponseEntity.ok(selection.fromEntity(objectMapper, progress));
+        }
+        return ResponseEntity.ok().eTag(ETags.of(progress.getVersion())).body(progress);
     }
     
     @PutMapping("/{stackId}")
     public ResponseEntity<ProgressData> updateProgress(@PathVariable String stackId,
-                                                      @Valid @RequestBody ProgressData progressDetails) {
-        try {
-            ProgressData updatedProgress = progressService.updateProgress(stackId, progressDetails);
-            return updatedProgress != null ? ResponseEntity.ok(updatedProgress) 
-                    : ResponseEntity.notFound().build();
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+                                                      @Valid @RequestBody ProgressData progressDetails,
+                                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                      @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        // Failed preconditions and concurrent edits are mapped by GlobalExceptionHandler
+        ProgressData updatedProgress = progressService.updateProgress(ownerId, stackId, progressDetails, ETags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok().eTag(ETags.of(updatedProgress.getVersion())).body(updatedProgress);
     }
     
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteProgress(@PathVariable String id) {
+    public ResponseEntity<Void> deleteProgress(@PathVariable String id,
+                                               @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
         try {
-            boolean deleted = progressService.deleteProgress(id);
+            boolean deleted = progressService.deleteProgress(ownerId, id);
             return deleted ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
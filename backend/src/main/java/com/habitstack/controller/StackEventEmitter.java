@@ -0,0 +1,44 @@
+package com.habitstack.controller;
+
+import com.habitstack.dto.StackEvent;
+import com.habitstack.service.StackEventStream;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+/**
+ * Writes the events of a StackEventStream subscription as server-sent events, with the resume
+ * token as event id so the browser sends it back as Last-Event-ID when it reconnects.
+ */
+final class StackEventEmitter extends SseEmitter implements StackEventStream.Listener {
+    
+    StackEventEmitter(long timeoutMillis) {
+        super(timeoutMillis);
+    }
+    
+    @Override
+    public void onEvent(StackEvent event) throws IOException {
+        SseEventBuilder builder = event().name(event.getType()).data(event);
+        if (event.getId() != null) {
+            builder.id(event.getId());
+        }
+        send(builder);
+    }
+    
+    @Override
+    public void onHeartbeat() throws IOException {
+        send(event().comment(""));
+    }
+    
+    @Override
+    public void onClose() {
+        complete();
+    }
+    
+    /** Cancels {@code subscription} however the response ends. */
+    void cancelOnEnd(Runnable subscription) {
+        onCompletion(subscription);
+        onTimeout(subscription);
+        onError(e -> subscription.run());
+    }
+}
@@ -0,0 +1,21 @@
+package com.habitstack.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items;
+    
+    // Pass back as "after" to fetch the next page; null on the last page
+    @JsonProperty("next_cursor")
+    private String nextCursor;
+}
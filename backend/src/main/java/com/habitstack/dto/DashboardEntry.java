@@ -0,0 +1,17 @@
+package com.habitstack.dto;
+
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.ProgressData;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DashboardEntry {
+    private HabitStack stack;
+    private ProgressData progress;
+}
@@ -0,0 +1,23 @@
+package com.habitstack.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DashboardResponse {
+    private List<DashboardEntry> items;
+    
+    @JsonProperty("next_cursor")
+    private String nextCursor;
+    
+    // Only computed for the first page
+    private DashboardSummary summary;
+}
@@ -0,0 +1,25 @@
+package com.habitstack.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DashboardSummary {
+    @JsonProperty("total_stacks")
+    private long totalStacks;
+    
+    @JsonProperty("completed_stacks")
+    private long completedStacks;
+    
+    @JsonProperty("total_habits")
+    private long totalHabits;
+    
+    @JsonProperty("completed_habits")
+    private long completedHabits;
+}
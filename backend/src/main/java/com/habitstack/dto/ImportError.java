@@ -0,0 +1,20 @@
+package com.habitstack.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportError {
+    // 1-based line number in the NDJSON body
+    private long line;
+    
+    // Null unless the record carried its own id
+    private String id;
+    
+    private String message;
+}
@@ -0,0 +1,25 @@
+package com.habitstack.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportReport {
+    private long received;
+    private long inserted;
+    private long failed;
+    
+    // Capped at habitstack.import.max-errors; failed still counts every rejected record
+    private List<ImportError> errors;
+    
+    @JsonProperty("errors_truncated")
+    private boolean errorsTruncated;
+}
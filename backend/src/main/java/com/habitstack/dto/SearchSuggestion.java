@@ -0,0 +1,16 @@
+package com.habitstack.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchSuggestion {
+    private String id;
+    private String name;
+    private String category;
+}
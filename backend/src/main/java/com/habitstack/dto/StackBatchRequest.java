@@ -0,0 +1,23 @@
+package com.habitstack.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StackBatchRequest {
+
+    @Valid
+    @NotEmpty(message = "Batch must contain at least one operation")
+    @Builder.Default
+    private List<StackOperation> operations = new ArrayList<>();
+}
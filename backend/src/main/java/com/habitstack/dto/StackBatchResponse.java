@@ -0,0 +1,20 @@
+package com.habitstack.dto;
+
+import com.habitstack.model.HabitStack;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StackBatchResponse {
+    private int operations;
+    private int matched;
+    private int modified;
+    private List<HabitStack> stacks;
+}
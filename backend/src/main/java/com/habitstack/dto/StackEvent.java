@@ -0,0 +1,49 @@
+package com.habitstack.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.ProgressData;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One change pushed by GET /stacks/events. {@code id} is the change-stream resume token and
+ * {@code type} the SSE event name; both travel in the SSE envelope rather than in the data.
+ * Deletes carry only the stack id, other operations the document as it is after the change.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StackEvent {
+    
+    public static final String STACK = "stack";
+    public static final String PROGRESS = "progress";
+    // Tells the client that events were lost and it should refetch
+    public static final String RESYNC = "resync";
+    
+    @JsonIgnore
+    private String id;
+    
+    @JsonIgnore
+    private String type;
+    
+    @JsonIgnore
+    private String ownerId;
+    
+    private String operation;
+    
+    @JsonProperty("stack_id")
+    private String stackId;
+    
+    private HabitStack stack;
+    
+    private ProgressData progress;
+    
+    public static StackEvent resync() {
+        return StackEvent.builder().type(RESYNC).build();
+    }
+}
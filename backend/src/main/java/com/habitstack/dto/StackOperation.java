@@ -0,0 +1,37 @@
+package com.habitstack.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StackOperation {
+
+    @NotNull(message = "Operation type is required")
+    private Type type;
+
+    @NotBlank(message = "Stack ID is required")
+    @JsonProperty("stack_id")
+    private String stackId;
+
+    @NotBlank(message = "Habit ID is required")
+    @JsonProperty("habit_id")
+    private String habitId;
+
+    // Only used by SET_COMPLETED
+    private Boolean completed;
+
+    public enum Type {
+        @JsonProperty("toggle")
+        TOGGLE,
+        @JsonProperty("set_completed")
+        SET_COMPLETED
+    }
+}
@@ -0,0 +1,48 @@
+package com.habitstack.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.habitstack.model.HabitStack;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * GET /stacks?view=summary item: what a progress bar needs, without the habits array.
+ * Property names match the full HabitStack representation.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StackSummary {
+    private String id;
+    
+    private String name;
+    
+    @JsonProperty("completedCount")
+    private int completedCount;
+    
+    @JsonProperty("totalCount")
+    private int totalCount;
+    
+    @JsonProperty("lastCompleted")
+    private LocalDateTime lastCompleted;
+    
+    @JsonProperty("completionPercentage")
+    public double getCompletionPercentage() {
+        return totalCount == 0 ? 0.0 : (double) completedCount / totalCount * 100;
+    }
+    
+    public static StackSummary of(HabitStack stack) {
+        return StackSummary.builder()
+                .id(stack.getId())
+                .name(stack.getName())
+                .completedCount(stack.getCompletedCount())
+                .totalCount(stack.getTotalCount())
+                .lastCompleted(stack.getLastCompleted())
+                .build();
+    }
+}
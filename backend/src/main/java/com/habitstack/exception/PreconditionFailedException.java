@@ -0,0 +1,15 @@
+package com.habitstack.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class PreconditionFailedException extends BaseException {
+    
+    public PreconditionFailedException(String message) {
+        super(message, HttpStatus.PRECONDITION_FAILED, "PRECONDITION_FAILED");
+    }
+    
+    public PreconditionFailedException(String resourceType, String id) {
+        super(String.format("%s with ID '%s' has been modified since the version given in If-Match", resourceType, id),
+              HttpStatus.PRECONDITION_FAILED, "PRECONDITION_FAILED");
+    }
+}
@@ -0,0 +1,71 @@
+package com.habitstack.logging;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed one-second windows per path prefix: the first {@code permitsPerSecond} requests in a window
+ * are logged, the rest are only counted. Paths outside the configured prefixes are never sampled.
+ */
+class AccessLogSampler {
+    
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    
+    private final List<String> prefixes;
+    private final int permitsPerSecond;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    
+    AccessLogSampler(List<String> prefixes, int permitsPerSecond) {
+        // Longest prefix first so /stacks/toggle-habit gets its own budget rather than sharing /stacks
+        this.prefixes = prefixes.stream()
+                .filter(prefix -> !prefix.isBlank())
+                .sorted(Comparator.comparingInt(String::length).reversed())
+                .toList();
+        this.permitsPerSecond = permitsPerSecond;
+    }
+    
+    /**
+     * Returns -1 if this request should not be logged, otherwise the number of requests on the same
+     * prefix that were skipped since the last logged one.
+     */
+    long tryAcquire(String path) {
+        String prefix = matchingPrefix(path);
+        if (prefix == null) {
+            return 0;
+        }
+        return windows.computeIfAbsent(prefix, key -> new Window()).tryAcquire(permitsPerSecond);
+    }
+    
+    private String matchingPrefix(String path) {
+        for (String prefix : prefixes) {
+            if (path.equals(prefix) || path.startsWith(prefix + "/")) {
+                return prefix;
+            }
+        }
+        return null;
+    }
+    
+    private static final class Window {
+        private long startedAt = System.nanoTime();
+        private int used;
+        private final AtomicLong skipped = new AtomicLong();
+        
+        synchronized long tryAcquire(int permits) {
+            long now = System.nanoTime();
+            if (now - startedAt >= WINDOW_NANOS) {
+                startedAt = now;
+                used = 0;
+            }
+            if (used >= permits) {
+                skipped.incrementAndGet();
+                return -1;
+            }
+            used++;
+            return skipped.getAndSet(0);
+        }
+    }
+}
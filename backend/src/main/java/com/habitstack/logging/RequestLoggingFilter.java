@@ -0,0 +1,96 @@
+package com.habitstack.logging;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Tags every request with a request id (taken from X-Request-Id when the caller sends a sane one)
+ * that is put in the MDC for all log lines and echoed back in the response, and writes one
+ * key=value access line per request to the com.habitstack.access logger.
+ * <p>
+ * At INFO the hot endpoints are sampled, while errors and slow requests are always logged.
+ * Setting com.habitstack.access to DEBUG through the loggers endpoint logs every request
+ * together with its query string.
+ */
+@Component
+@Profile("!reactive")
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestLoggingFilter extends OncePerRequestFilter {
+    
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+    public static final String REQUEST_ID_MDC_KEY = "requestId";
+    
+    private static final Logger accessLog = LoggerFactory.getLogger("com.habitstack.access");
+    private static final Pattern VALID_REQUEST_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+    
+    private final AccessLogSampler sampler;
+    private final long slowRequestNanos;
+    
+    public RequestLoggingFilter(
+            @Value("${habitstack.logging.sampled-paths:}") List<String> sampledPaths,
+            @Value("${habitstack.logging.sample-rate:5}") int sampleRate,
+            @Value("${habitstack.logging.slow-request-threshold:PT1S}") Duration slowRequestThreshold) {
+        this.sampler = new AccessLogSampler(sampledPaths, sampleRate);
+        this.slowRequestNanos = slowRequestThreshold.toNanos();
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String requestId = request.getHeader(REQUEST_ID_HEADER);
+        if (requestId == null || !VALID_REQUEST_ID.matcher(requestId).matches()) {
+            requestId = UUID.randomUUID().toString();
+        }
+        MDC.put(REQUEST_ID_MDC_KEY, requestId);
+        response.setHeader(REQUEST_ID_HEADER, requestId);
+        
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            logRequest(request, response.getStatus(), System.nanoTime() - start);
+            MDC.remove(REQUEST_ID_MDC_KEY);
+        }
+    }
+    
+    private void logRequest(HttpServletRequest request, int status, long elapsedNanos) {
+        if (!accessLog.isInfoEnabled()) {
+            return;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        long durationMs = elapsedNanos / 1_000_000;
+        
+        if (accessLog.isDebugEnabled()) {
+            accessLog.debug("method={} path={} query=\"{}\" status={} duration_ms={}",
+                    request.getMethod(), path, request.getQueryString(), status, durationMs);
+            return;
+        }
+        
+        long skipped = 0;
+        if (status < 500 && elapsedNanos < slowRequestNanos) {
+            skipped = sampler.tryAcquire(path);
+            if (skipped < 0) {
+                return;
+            }
+        }
+        accessLog.info("method={} path={} status={} duration_ms={} skipped={}",
+                request.getMethod(), path, status, durationMs, skipped);
+    }
+}
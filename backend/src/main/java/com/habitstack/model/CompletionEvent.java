@@ -0,0 +1,85 @@
+package com.habitstack.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Append-only record of a stack's completion state right after a habit was toggled.
+ * Progress statistics are derived from these by CompletionEventProcessor.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "completion_events")
+public class CompletionEvent {
+    @Id
+    private String id;
+    
+    @Field("stack_id")
+    @JsonProperty("stack_id")
+    private String stackId;
+    
+    // Copied from the stack so progress created from the event belongs to the same owner
+    @Field("owner_id")
+    @JsonProperty("owner_id")
+    private String ownerId;
+    
+    // Null for events recorded from a batch, which only capture the resulting stack state
+    @Field("habit_id")
+    @JsonProperty("habit_id")
+    private String habitId;
+    
+    @Field("completed_count")
+    @JsonProperty("completed_count")
+    private int completedCount;
+    
+    @Field("total_count")
+    @JsonProperty("total_count")
+    private int totalCount;
+    
+    @Field("stack_completed")
+    @JsonProperty("stack_completed")
+    private boolean stackCompleted;
+    
+    // The stack's timezone when the event was recorded; null means the server's zone
+    private String timezone;
+    
+    @Field("occurred_at")
+    @JsonProperty("occurred_at")
+    @Builder.Default
+    private LocalDateTime occurredAt = LocalDateTime.now();
+    
+    public ZoneId zoneId() {
+        return timezone != null ? ZoneId.of(timezone) : ZoneId.systemDefault();
+    }
+    
+    /**
+     * The day the event happened on in the stack's timezone. occurredAt is in the server's zone.
+     */
+    public LocalDate localDay() {
+        return occurredAt.atZone(ZoneId.systemDefault()).withZoneSameInstant(zoneId()).toLocalDate();
+    }
+    
+    public static CompletionEvent of(HabitStack stack, String habitId) {
+        return CompletionEvent.builder()
+                .stackId(stack.getId())
+                .ownerId(stack.getOwnerId())
+                .habitId(habitId)
+                .completedCount(stack.getCompletedCount())
+                .totalCount(stack.getTotalCount())
+                .stackCompleted(stack.isCompleted())
+                .timezone(stack.getTimezone())
+                .build();
+    }
+}
@@ -6,6 +6,9 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 import jakarta.persistence.Entity;
@@ -21,10 +24,24 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "habits")
+@CompoundIndexes({
+        @CompoundIndex(name = "owner_id", def = "{'owner_id': 1, '_id': 1}"),
+        @CompoundIndex(name = "owner_category", def = "{'owner_id': 1, 'category': 1, '_id': 1}"),
+        @CompoundIndex(name = "owner_name", def = "{'owner_id': 1, 'name': 1}")
+})
 public class Habit {
     @Id
     private String id;
     
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+    
+    // Set from the request's owner, never from the body
+    @Field("owner_id")
+    @JsonProperty(value = "owner_id", access = JsonProperty.Access.READ_ONLY)
+    private String ownerId;
+    
     @NotBlank(message = "Habit name is required")
     private String name;
     
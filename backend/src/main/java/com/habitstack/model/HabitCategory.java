@@ -6,6 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 import jakarta.persistence.Entity;
@@ -19,10 +20,17 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "habit_categories")
+// Names are unique per owner, not globally
+@CompoundIndex(name = "owner_name", def = "{'owner_id': 1, 'name': 1}", unique = true)
 public class HabitCategory {
     @Id
     private String id;
     
+    // Set from the request's owner, never from the body
+    @Field("owner_id")
+    @JsonProperty(value = "owner_id", access = JsonProperty.Access.READ_ONLY)
+    private String ownerId;
+    
     @NotBlank(message = "Category name is required")
     private String name;
     
@@ -40,9 +48,9 @@ public class HabitCategory {
     @Builder.Default
     private LocalDateTime createdAt = LocalDateTime.now();
     
-    public HabitCategory(String stack, String name, String color, String icon) {
+    public HabitCategory(String ownerId, String name, String color, String icon) {
         this.id = UUID.randomUUID().toString();
-        this.stack = stack;
+        this.ownerId = ownerId;
         this.name = name;
         this.color = color;
         this.icon = icon;
@@ -1,17 +1,23 @@
 package com.habitstack.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 import jakarta.persistence.Entity;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -22,10 +28,27 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "habit_stacks")
+@CompoundIndexes({
+        @CompoundIndex(name = "owner_id", def = "{'owner_id': 1, '_id': 1}"),
+        @CompoundIndex(name = "owner_name", def = "{'owner_id': 1, 'name': 1}"),
+        // Multikey; finds the stacks referencing a habit when it is deleted
+        @CompoundIndex(name = "owner_habit_id", def = "{'owner_id': 1, 'habits.habitId': 1}"),
+        @CompoundIndex(name = "timezone_rollover_date", def = "{'timezone': 1, 'rollover_date': 1, '_id': 1}")
+})
 public class HabitStack {
     @Id
     private String id;
     
+    // Incremented on every write; exposed to clients as the ETag
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+    
+    // Set from the request's owner, never from the body
+    @Field("owner_id")
+    @JsonProperty(value = "owner_id", access = JsonProperty.Access.READ_ONLY)
+    private String ownerId;
+    
     @NotBlank(message = "Stack name is required")
     private String name;
     
@@ -42,6 +65,25 @@ public class HabitStack {
     @JsonProperty("lastCompleted")
     private LocalDateTime lastCompleted;
     
+    // Denormalised from habits so list views need not load the array; written by refreshCounts()
+    // on save and by the toggle pipelines in HabitStackRepositoryImpl. CountsBackfill fills them in
+    // on older documents.
+    @Field("completed_count")
+    @JsonProperty(value = "completedCount", access = JsonProperty.Access.READ_ONLY)
+    private Integer completedCount;
+    
+    @Field("total_count")
+    @JsonProperty(value = "totalCount", access = JsonProperty.Access.READ_ONLY)
+    private Integer totalCount;
+    
+    // IANA zone whose midnight starts a new day for this stack; null means the server's zone
+    private String timezone;
+    
+    // Local day the stack was last rolled over to by DailyRollover
+    @Field("rollover_date")
+    @JsonIgnore
+    private LocalDate rolloverDate;
+    
     public HabitStack(String name, List<StackHabit> habits) {
         this.id = UUID.randomUUID().toString();
         this.name = name;
@@ -51,15 +93,34 @@ public class HabitStack {
     
     // Helper methods
     public boolean isCompleted() {
-        return habits.stream().allMatch(StackHabit::isCompleted);
+        return getCompletedCount() == getTotalCount();
     }
     
     public int getCompletedCount() {
+        if (completedCount != null) return completedCount;
         return (int) habits.stream().filter(StackHabit::isCompleted).count();
     }
     
+    public int getTotalCount() {
+        return totalCount != null ? totalCount : habits.size();
+    }
+    
+    public ZoneId zoneId() {
+        return timezone != null ? ZoneId.of(timezone) : ZoneId.systemDefault();
+    }
+    
     public double getCompletionPercentage() {
-        if (habits.isEmpty()) return 0.0;
-        return (double) getCompletedCount() / habits.size() * 100;
+        if (getTotalCount() == 0) return 0.0;
+        return (double) getCompletedCount() / getTotalCount() * 100;
+    }
+    
+    /**
+     * Recomputes the stored counters from the habits list; call before saving a stack whose
+     * habits were replaced in memory.
+     */
+    public HabitStack refreshCounts() {
+        this.totalCount = habits.size();
+        this.completedCount = (int) habits.stream().filter(StackHabit::isCompleted).count();
+        return this;
     }
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.habitstack.model;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+
+/**
+ * Every document belongs to exactly one owner and is only visible to requests made on its
+ * behalf. Requests name their owner in the X-Owner-Id header; requests without one, and
+ * documents stored before owners existed, belong to DEFAULT.
+ */
+public final class Owners {
+    
+    public static final String HEADER = "X-Owner-Id";
+    public static final String DEFAULT = "default";
+    
+    // Stored field name, shared by all four collections
+    public static final String FIELD = "owner_id";
+    
+    private Owners() {
+    }
+    
+    public static Criteria ownedBy(String ownerId) {
+        return Criteria.where(FIELD).is(ownerId);
+    }
+}
@@ -0,0 +1,33 @@
+package com.habitstack.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+
+/**
+ * Resume position and lease of a background processor, one document per processor name.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "processor_checkpoints")
+public class ProcessorCheckpoint {
+    @Id
+    private String id;
+    
+    @Field("last_event_id")
+    private String lastEventId;
+    
+    @Field("lease_owner")
+    private String leaseOwner;
+    
+    @Field("lease_until")
+    private LocalDateTime leaseUntil;
+}
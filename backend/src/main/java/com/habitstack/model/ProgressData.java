@@ -1,17 +1,23 @@
 package com.habitstack.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 import jakarta.persistence.Entity;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Min;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
@@ -22,10 +28,21 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "progress_data")
+@CompoundIndex(name = "owner_id", def = "{'owner_id': 1, '_id': 1}")
 public class ProgressData {
     @Id
     private String id;
     
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+    
+    // Set from the request's owner, never from the body
+    @Field("owner_id")
+    @JsonProperty(value = "owner_id", access = JsonProperty.Access.READ_ONLY)
+    private String ownerId;
+    
+    @Indexed(unique = true)
     @NotBlank(message = "Stack ID is required")
     @Field("stack_id")
     @JsonProperty("stack_id")
@@ -53,18 +70,37 @@ public class ProgressData {
     @Builder.Default
     private List<Boolean> lastWeekProgress = Arrays.asList(false, false, false, false, false, false, false);
     
+    // Days within the last week on which the stack was fully completed; maintained by
+    // CompletionEventProcessor to derive streaks and lastWeekProgress incrementally
+    @Field("completion_days")
+    @JsonIgnore
+    @Builder.Default
+    private List<LocalDate> completionDays = new ArrayList<>();
+    
     @Field("updated_at")
     @JsonProperty("updated_at")
     @Builder.Default
     private LocalDateTime updatedAt = LocalDateTime.now();
     
-    public ProgressData(String stackId) {
+    public ProgressData(String ownerId, String stackId) {
         this.id = UUID.randomUUID().toString();
+        this.ownerId = ownerId;
         this.stackId = stackId;
         this.currentStreak = 0;
         this.longestStreak = 0;
         this.completionRate = 0.0;
         this.lastWeekProgress = Arrays.asList(false, false, false, false, false, false, false);
+        this.completionDays = new ArrayList<>();
         this.updatedAt = LocalDateTime.now();
     }
+    
+    /**
+     * Default progress for a stack that has none stored, handed out by reads instead of being
+     * saved. It has no id or version until a write stores it.
+     */
+    public static ProgressData unsaved(String ownerId, String stackId) {
+        ProgressData progress = new ProgressData(ownerId, stackId);
+        progress.setId(null);
+        return progress;
+    }
 }
\ No newline at end of file
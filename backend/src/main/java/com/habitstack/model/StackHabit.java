@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Transient;
 import jakarta.validation.constraints.NotBlank;
 
 @Data
@@ -20,6 +21,11 @@ public class StackHabit {
     @Builder.Default
     private boolean completed = false;
     
+    // Filled in only when a stack is requested with expand=habits; never stored
+    @Transient
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Habit habit;
+    
     public StackHabit(String habitId) {
         this.habitId = habitId;
         this.completed = false;
@@ -0,0 +1,35 @@
+package com.habitstack.reactive;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * WebFlux counterpart of BinaryFormatsConfig: CBOR and Smile encoders built from the same
+ * Spring Boot ObjectMapper settings as the JSON codec.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveCodecConfig implements WebFluxConfigurer {
+    
+    private final Jackson2ObjectMapperBuilder cborBuilder;
+    private final Jackson2ObjectMapperBuilder smileBuilder;
+    
+    // The builder bean is prototype scoped, so each parameter is a separate instance
+    public ReactiveCodecConfig(Jackson2ObjectMapperBuilder cborBuilder, Jackson2ObjectMapperBuilder smileBuilder) {
+        this.cborBuilder = cborBuilder;
+        this.smileBuilder = smileBuilder;
+    }
+    
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        configurer.customCodecs().register(new Jackson2CborEncoder(cborBuilder.factory(new CBORFactory()).build()));
+        configurer.customCodecs().register(new Jackson2SmileEncoder(smileBuilder.factory(new SmileFactory()).build()));
+    }
+}
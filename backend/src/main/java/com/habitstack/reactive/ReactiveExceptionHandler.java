@@ -0,0 +1,53 @@
+package com.habitstack.reactive;
+
+import com.habitstack.dto.ErrorResponse;
+import com.habitstack.exception.BaseException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.time.LocalDateTime;
+
+/**
+ * WebFlux counterpart of GlobalExceptionHandler, producing the same ErrorResponse bodies.
+ */
+@Slf4j
+@Profile("reactive")
+@RestControllerAdvice
+public class ReactiveExceptionHandler {
+    
+    @ExceptionHandler(BaseException.class)
+    public ResponseEntity<ErrorResponse> handleBaseException(BaseException ex, ServerHttpRequest request) {
+        log.error("Request failed: {}", ex.getMessage(), ex);
+        
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                .message(ex.getStatus().is5xxServerError() ? "An error occurred while processing your request" : ex.getMessage())
+                .errorCode(ex.getErrorCode())
+                .statusCode(ex.getStatus().value())
+                .timestamp(LocalDateTime.now())
+                .path(request.getPath().value())
+                .details(ex.getDetails())
+                .build();
+        
+        return ResponseEntity.status(ex.getStatus()).body(errorResponse);
+    }
+    
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<ErrorResponse> handleGenericException(Exception ex, ServerHttpRequest request) {
+        log.error("Unexpected error occurred: {}", ex.getMessage(), ex);
+        
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                .message("An unexpected error occurred")
+                .errorCode("INTERNAL_SERVER_ERROR")
+                .statusCode(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                .timestamp(LocalDateTime.now())
+                .path(request.getPath().value())
+                .build();
+        
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+    }
+}
@@ -0,0 +1,62 @@
+package com.habitstack.reactive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.habitstack.exception.ResourceNotFoundException;
+import com.habitstack.model.HabitCategory;
+import com.habitstack.model.Owners;
+import com.habitstack.repository.FieldSelection;
+import com.habitstack.service.HabitCategoryService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@Profile("reactive")
+@CrossOrigin(origins = "https://chain-habits.preview.emergentagent.com")
+@RequestMapping("/categories")
+@RequiredArgsConstructor
+public class ReactiveHabitCategoryController {
+    
+    private final ReactiveHabitCategoryRepository categoryRepository;
+    private final HabitCategoryService categoryService;
+    private final ObjectMapper objectMapper;
+    
+    @GetMapping
+    public Mono<ResponseEntity<?>> getAllCategories(
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        FieldSelection selection = FieldSelection.of(HabitCategory.class, fields);
+        // Served from CategoryCache so the ETag matches the servlet deployment; only a cache
+        // miss touches Mongo, and that happens off the event loop
+        return Mono.fromCallable(() -> categoryService.getCategoryList(ownerId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .<ResponseEntity<?>>map(categories -> ResponseEntity.ok()
+                        .eTag(categories.etag())
+                        .cacheControl(CacheControl.noCache())
+                        .body(selection != null ? select(selection, categories.categories()) : categories.categories()));
+    }
+    
+    @GetMapping("/{id}")
+    public Mono<?> getCategoryById(@PathVariable String id,
+                                   @RequestParam(required = false) String fields,
+                                   @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        FieldSelection selection = FieldSelection.of(HabitCategory.class, fields);
+        return categoryRepository.findByIdAndOwnerId(id, ownerId)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Category", id)))
+                .map(category -> selection != null ? selection.fromEntity(objectMapper, category) : category);
+    }
+    
+    // As on the servlet side, fields are picked from the cached entities rather than projected in Mongo
+    private List<Map<String, Object>> select(FieldSelection selection, List<HabitCategory> categories) {
+        return categories.stream()
+                .map(category -> selection.fromEntity(objectMapper, category))
+                .toList();
+    }
+}
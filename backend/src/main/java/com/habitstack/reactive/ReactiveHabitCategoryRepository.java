@@ -0,0 +1,12 @@
+package com.habitstack.reactive;
+
+import com.habitstack.model.HabitCategory;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface ReactiveHabitCategoryRepository extends ReactiveMongoRepository<HabitCategory, String> {
+    Mono<HabitCategory> findByIdAndOwnerId(String id, String ownerId);
+    Mono<HabitCategory> findByOwnerIdAndName(String ownerId, String name);
+}
@@ -0,0 +1,118 @@
+package com.habitstack.reactive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.habitstack.dto.SearchSuggestion;
+import com.habitstack.model.Habit;
+import com.habitstack.model.Owners;
+import com.habitstack.repository.FieldSelection;
+import com.habitstack.search.HabitSearchIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@Profile("reactive")
+@CrossOrigin(origins = "https://chain-habits.preview.emergentagent.com")
+@RequestMapping("/habits")
+@RequiredArgsConstructor
+public class ReactiveHabitController {
+    
+    private final ReactiveHabitRepository habitRepository;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final HabitSearchIndex habitSearchIndex;
+    private final ObjectMapper objectMapper;
+    
+    @GetMapping
+    public ResponseEntity<?> getAllHabits(
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        
+        FieldSelection selection = FieldSelection.of(Habit.class, fields);
+        if (selection != null) {
+            if (search != null) {
+                return ResponseEntity.ok(searchHabits(ownerId, search, category)
+                        .map(habit -> selection.fromEntity(objectMapper, habit)));
+            }
+            if (limit != null || after != null) {
+                return ResponseEntity.ok(ReactiveResponses.fieldsPage(mongoTemplate, selection, ownerFilter(ownerId, category),
+                        after, limit));
+            }
+            return ResponseEntity.ok(ReactiveResponses.fields(mongoTemplate, selection, ownerFilter(ownerId, category)));
+        }
+        
+        if (search == null) {
+            Criteria filter = ownerFilter(ownerId, category);
+            if (ReactiveResponses.isNdjsonRequested(accept)) {
+                return ReactiveResponses.ndjson(mongoTemplate, filter, Habit.class, after);
+            }
+            if (limit != null || after != null) {
+                return ResponseEntity.ok(ReactiveResponses.page(mongoTemplate, filter, Habit.class,
+                        Habit::getId, after, limit));
+            }
+            return ResponseEntity.ok(category != null
+                    ? habitRepository.findByOwnerIdAndCategory(ownerId, category)
+                    : habitRepository.findByOwnerId(ownerId));
+        }
+        
+        return ResponseEntity.ok(searchHabits(ownerId, search, category));
+    }
+    
+    @GetMapping("/autocomplete")
+    public Flux<SearchSuggestion> autocompleteHabits(
+            @RequestParam("q") String prefix,
+            @RequestParam(required = false) String category,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        int size = Math.max(1, Math.min(limit, 50));
+        Flux<Habit> habits = habitSearchIndex.isReady()
+                ? Flux.fromIterable(habitSearchIndex.autocomplete(ownerId, prefix, category, size))
+                : (category != null
+                        ? habitRepository.findByOwnerIdAndCategoryAndNameContainingIgnoreCase(ownerId, category, prefix)
+                        : habitRepository.findByOwnerIdAndNameContainingIgnoreCase(ownerId, prefix)).take(size);
+        return habits.map(habit -> SearchSuggestion.builder()
+                .id(habit.getId())
+                .name(habit.getName())
+                .category(habit.getCategory())
+                .build());
+    }
+    
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<?>> getHabitById(@PathVariable String id,
+                                                @RequestParam(required = false) String fields,
+                                                @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        FieldSelection selection = FieldSelection.of(Habit.class, fields);
+        if (selection != null) {
+            return ReactiveResponses.fieldsOne(mongoTemplate, selection, Owners.ownedBy(ownerId).and("_id").is(id))
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .defaultIfEmpty(ResponseEntity.notFound().build());
+        }
+        return habitRepository.findByIdAndOwnerId(id, ownerId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+    
+    private Flux<Habit> searchHabits(String ownerId, String search, String category) {
+        if (habitSearchIndex.isReady()) {
+            return Flux.fromIterable(habitSearchIndex.search(ownerId, search, category, Integer.MAX_VALUE));
+        }
+        return category != null
+                ? habitRepository.findByOwnerIdAndCategoryAndNameContainingIgnoreCase(ownerId, category, search)
+                : habitRepository.findByOwnerIdAndNameContainingIgnoreCase(ownerId, search);
+    }
+    
+    private static Criteria ownerFilter(String ownerId, String category) {
+        Criteria filter = Owners.ownedBy(ownerId);
+        return category != null ? filter.and("category").is(category) : filter;
+    }
+}
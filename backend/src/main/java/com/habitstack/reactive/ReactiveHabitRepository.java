@@ -0,0 +1,20 @@
+package com.habitstack.reactive;
+
+import com.habitstack.model.Habit;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+// Owner-scoped like HabitRepository, so the same {owner_id, ...} indexes serve both stacks
+@Repository
+public interface ReactiveHabitRepository extends ReactiveMongoRepository<Habit, String> {
+    Flux<Habit> findByOwnerId(String ownerId);
+    Mono<Habit> findByIdAndOwnerId(String id, String ownerId);
+    Flux<Habit> findByOwnerIdAndIdIn(String ownerId, Collection<String> ids);
+    Flux<Habit> findByOwnerIdAndCategory(String ownerId, String category);
+    Flux<Habit> findByOwnerIdAndNameContainingIgnoreCase(String ownerId, String name);
+    Flux<Habit> findByOwnerIdAndCategoryAndNameContainingIgnoreCase(String ownerId, String category, String name);
+}
@@ -0,0 +1,214 @@
+package com.habitstack.reactive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.habitstack.dto.CursorPage;
+import com.habitstack.dto.SearchSuggestion;
+import com.habitstack.dto.StackEvent;
+import com.habitstack.dto.StackSummary;
+import com.habitstack.exception.ValidationException;
+import com.habitstack.model.Habit;
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.Owners;
+import com.habitstack.repository.FieldSelection;
+import com.habitstack.search.StackSearchIndex;
+import com.habitstack.service.StackEventStream;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+@RestController
+@Profile("reactive")
+@CrossOrigin(origins = "https://chain-habits.preview.emergentagent.com")
+@RequestMapping("/stacks")
+@RequiredArgsConstructor
+public class ReactiveHabitStackController {
+    
+    private final ReactiveHabitStackRepository stackRepository;
+    private final ReactiveHabitRepository habitRepository;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final StackSearchIndex stackSearchIndex;
+    private final StackEventStream stackEventStream;
+    private final ObjectMapper objectMapper;
+    
+    @GetMapping
+    public ResponseEntity<?> getAllStacks(
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String expand,
+            @RequestParam(required = false) String view,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        
+        FieldSelection selection = selectFields(fields, view, expand);
+        if (selection != null) {
+            if (search != null) {
+                return ResponseEntity.ok(searchStacks(ownerId, search).map(list -> list.stream()
+                        .map(stack -> selection.fromEntity(objectMapper, stack))
+                        .toList()));
+            }
+            if (limit != null || after != null) {
+                return ResponseEntity.ok(ReactiveResponses.fieldsPage(mongoTemplate, selection, Owners.ownedBy(ownerId),
+                        after, limit));
+            }
+            return ResponseEntity.ok(ReactiveResponses.fields(mongoTemplate, selection, Owners.ownedBy(ownerId)));
+        }
+        
+        if (view != null) {
+            if (!"summary".equals(view)) {
+                throw new ValidationException("view", "must be 'summary'");
+            }
+            // Mapped from the full documents here; the servlet side projects in Mongo instead
+            if (search != null) {
+                return ResponseEntity.ok(searchStacks(ownerId, search).map(list -> list.stream().map(StackSummary::of).toList()));
+            }
+            if (limit != null || after != null) {
+                return ResponseEntity.ok(ReactiveResponses.page(mongoTemplate, Owners.ownedBy(ownerId), HabitStack.class,
+                                HabitStack::getId, after, limit)
+                        .map(page -> CursorPage.<StackSummary>builder()
+                                .items(page.getItems().stream().map(StackSummary::of).toList())
+                                .nextCursor(page.getNextCursor())
+                                .build()));
+            }
+            return ResponseEntity.ok(stackRepository.findByOwnerId(ownerId).map(StackSummary::of).collectList());
+        }
+        
+        if (search == null) {
+            if (ReactiveResponses.isNdjsonRequested(accept)) {
+                return ReactiveResponses.ndjson(mongoTemplate, Owners.ownedBy(ownerId), HabitStack.class, after);
+            }
+            if (limit != null || after != null) {
+                return ResponseEntity.ok(ReactiveResponses.page(mongoTemplate, Owners.ownedBy(ownerId), HabitStack.class,
+                                HabitStack::getId, after, limit)
+                        .flatMap(page -> expandsHabits(expand)
+                                ? expandHabits(ownerId, page.getItems()).thenReturn(page)
+                                : Mono.just(page)));
+            }
+        }
+        
+        Mono<List<HabitStack>> stacks = search != null ? searchStacks(ownerId, search) : stackRepository.findByOwnerId(ownerId).collectList();
+        return ResponseEntity.ok(expandsHabits(expand)
+                ? stacks.flatMap(list -> expandHabits(ownerId, list).thenReturn(list))
+                : stacks);
+    }
+    
+    @GetMapping("/autocomplete")
+    public Flux<SearchSuggestion> autocompleteStacks(
+            @RequestParam("q") String prefix,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        int size = Math.max(1, Math.min(limit, 50));
+        if (!stackSearchIndex.isReady()) {
+            return stackRepository.findByOwnerIdAndNameContainingIgnoreCase(ownerId, prefix)
+                    .take(size)
+                    .map(stack -> SearchSuggestion.builder().id(stack.getId()).name(stack.getName()).build());
+        }
+        return Flux.fromIterable(stackSearchIndex.autocomplete(ownerId, prefix, size).entrySet())
+                .map(entry -> SearchSuggestion.builder().id(entry.getKey()).name(entry.getValue()).build());
+    }
+    
+    /**
+     * Same stream as the servlet endpoint. The sink errors instead of buffering when the client
+     * stops reading, which ends the response; the client then resumes with Last-Event-ID.
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<StackEvent>> streamEvents(
+            @RequestParam(required = false) Set<String> stackId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        Set<String> stackIds = stackId != null ? stackId : Set.of();
+        return Flux.create(sink -> {
+            Runnable subscription = stackEventStream.subscribe(ownerId, stackIds, lastEventId, new StackEventStream.Listener() {
+                @Override
+                public void onEvent(StackEvent event) {
+                    sink.next(ServerSentEvent.builder(event).id(event.getId()).event(event.getType()).build());
+                }
+                
+                @Override
+                public void onHeartbeat() {
+                    sink.next(ServerSentEvent.<StackEvent>builder().comment("").build());
+                }
+                
+                @Override
+                public void onClose() {
+                    sink.complete();
+                }
+            });
+            sink.onDispose(subscription::run);
+        }, FluxSink.OverflowStrategy.ERROR);
+    }
+    
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<?>> getStackById(@PathVariable String id,
+                                                @RequestParam(required = false) String expand,
+                                                @RequestParam(required = false) String fields,
+                                                @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        FieldSelection selection = selectFields(fields, null, expand);
+        if (selection != null) {
+            return ReactiveResponses.fieldsOne(mongoTemplate, selection, Owners.ownedBy(ownerId).and("_id").is(id))
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .defaultIfEmpty(ResponseEntity.notFound().build());
+        }
+        return stackRepository.findByIdAndOwnerId(id, ownerId)
+                .flatMap(stack -> expandsHabits(expand)
+                        ? expandHabits(ownerId, List.of(stack)).thenReturn(stack)
+                        : Mono.just(stack))
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+    
+    private Mono<List<HabitStack>> searchStacks(String ownerId, String query) {
+        if (!stackSearchIndex.isReady()) {
+            return stackRepository.findByOwnerIdAndNameContainingIgnoreCase(ownerId, query).collectList();
+        }
+        List<String> ids = stackSearchIndex.search(ownerId, query, Integer.MAX_VALUE);
+        return stackRepository.findByOwnerIdAndIdIn(ownerId, ids)
+                .collectMap(HabitStack::getId)
+                .map(stacksById -> ids.stream()
+                        .map(stacksById::get)
+                        .filter(Objects::nonNull)
+                        .toList());
+    }
+    
+    private Mono<Void> expandHabits(String ownerId, List<HabitStack> stacks) {
+        Set<String> habitIds = new HashSet<>();
+        stacks.forEach(stack -> stack.getHabits().forEach(stackHabit -> habitIds.add(stackHabit.getHabitId())));
+        if (habitIds.isEmpty()) {
+            return Mono.empty();
+        }
+        return habitRepository.findByOwnerIdAndIdIn(ownerId, habitIds)
+                .collect(HashMap<String, Habit>::new, (map, habit) -> map.put(habit.getId(), habit))
+                .doOnNext(habitsById -> stacks.forEach(stack -> stack.getHabits()
+                        .forEach(stackHabit -> stackHabit.setHabit(habitsById.get(stackHabit.getHabitId())))))
+                .then();
+    }
+    
+    // Sparse fieldsets come straight from a projection, so they cannot be expanded or summarised
+    private static FieldSelection selectFields(String fields, String view, String expand) {
+        FieldSelection selection = FieldSelection.of(HabitStack.class, fields);
+        if (selection != null && (view != null || expand != null)) {
+            throw new ValidationException("fields", "cannot be combined with view or expand");
+        }
+        return selection;
+    }
+    
+    private static boolean expandsHabits(String expand) {
+        return expand != null && Arrays.asList(expand.split(",")).contains("habits");
+    }
+}
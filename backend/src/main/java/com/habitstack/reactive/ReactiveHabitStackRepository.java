@@ -0,0 +1,17 @@
+package com.habitstack.reactive;
+
+import com.habitstack.model.HabitStack;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+@Repository
+public interface ReactiveHabitStackRepository extends ReactiveMongoRepository<HabitStack, String> {
+    Flux<HabitStack> findByOwnerId(String ownerId);
+    Mono<HabitStack> findByIdAndOwnerId(String id, String ownerId);
+    Flux<HabitStack> findByOwnerIdAndIdIn(String ownerId, Collection<String> ids);
+    Flux<HabitStack> findByOwnerIdAndNameContainingIgnoreCase(String ownerId, String name);
+}
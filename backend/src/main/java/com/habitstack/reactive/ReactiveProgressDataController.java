@@ -0,0 +1,64 @@
+package com.habitstack.reactive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.habitstack.model.Owners;
+import com.habitstack.model.ProgressData;
+import com.habitstack.repository.FieldSelection;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+@RestController
+@Profile("reactive")
+@CrossOrigin(origins = "https://chain-habits.preview.emergentagent.com")
+@RequestMapping("/progress")
+@RequiredArgsConstructor
+public class ReactiveProgressDataController {
+    
+    private final ReactiveProgressDataRepository progressRepository;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    
+    @GetMapping
+    public ResponseEntity<?> getAllProgress(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        FieldSelection selection = FieldSelection.of(ProgressData.class, fields);
+        if (selection != null) {
+            if (limit != null || after != null) {
+                return ResponseEntity.ok(ReactiveResponses.fieldsPage(mongoTemplate, selection, Owners.ownedBy(ownerId),
+                        after, limit));
+            }
+            return ResponseEntity.ok(ReactiveResponses.fields(mongoTemplate, selection, Owners.ownedBy(ownerId)));
+        }
+        if (ReactiveResponses.isNdjsonRequested(accept)) {
+            return ReactiveResponses.ndjson(mongoTemplate, Owners.ownedBy(ownerId), ProgressData.class, after);
+        }
+        if (limit != null || after != null) {
+            return ResponseEntity.ok(ReactiveResponses.page(mongoTemplate, Owners.ownedBy(ownerId), ProgressData.class,
+                    ProgressData::getId, after, limit));
+        }
+        return ResponseEntity.ok(progressRepository.findByOwnerId(ownerId));
+    }
+    
+    @GetMapping("/{stackId}")
+    public Mono<?> getProgressByStackId(@PathVariable String stackId,
+                                        @RequestParam(required = false) String fields,
+                                        @RequestHeader(value = Owners.HEADER, defaultValue = Owners.DEFAULT) String ownerId) {
+        FieldSelection selection = FieldSelection.of(ProgressData.class, fields);
+        // Same contract as the servlet endpoint: a missing document is answered with an unsaved default
+        if (selection != null) {
+            return ReactiveResponses.fieldsOne(mongoTemplate, selection, Owners.ownedBy(ownerId).and("stack_id").is(stackId))
+                    .switchIfEmpty(Mono.fromSupplier(() -> selection.fromEntity(objectMapper, ProgressData.unsaved(ownerId, stackId))));
+        }
+        return progressRepository.findByOwnerIdAndStackId(ownerId, stackId)
+                .defaultIfEmpty(ProgressData.unsaved(ownerId, stackId));
+    }
+}
@@ -0,0 +1,13 @@
+package com.habitstack.reactive;
+
+import com.habitstack.model.ProgressData;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface ReactiveProgressDataRepository extends ReactiveMongoRepository<ProgressData, String> {
+    Flux<ProgressData> findByOwnerId(String ownerId);
+    Mono<ProgressData> findByOwnerIdAndStackId(String ownerId, String stackId);
+}
@@ -0,0 +1,73 @@
+package com.habitstack.reactive;
+
+import com.habitstack.dto.CursorPage;
+import com.habitstack.repository.FieldSelection;
+import com.habitstack.repository.KeysetQueries;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * List-endpoint plumbing shared by the reactive controllers, mirroring the servlet contract:
+ * NDJSON when asked for, a keyset page when limit/after is given, otherwise the full array.
+ * {@code fields=} selections are projected in Mongo as SparseFieldQueries does on the servlet side.
+ */
+final class ReactiveResponses {
+    
+    private ReactiveResponses() {
+    }
+    
+    static boolean isNdjsonRequested(String accept) {
+        return accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE);
+    }
+    
+    static <T> ResponseEntity<Flux<T>> ndjson(ReactiveMongoTemplate mongoTemplate, Criteria filter,
+                                              Class<T> type, String after) {
+        Flux<T> documents = mongoTemplate.find(KeysetQueries.keysetQuery(filter, after), type);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(documents);
+    }
+    
+    static <T> Mono<CursorPage<T>> page(ReactiveMongoTemplate mongoTemplate, Criteria filter, Class<T> type,
+                                        Function<T, String> idOf, String after, Integer limit) {
+        int pageSize = limit != null ? limit : KeysetQueries.DEFAULT_LIMIT;
+        KeysetQueries.checkLimit(pageSize);
+        return mongoTemplate.find(KeysetQueries.keysetQuery(filter, after).limit(pageSize + 1), type)
+                .collectList()
+                .map(items -> KeysetQueries.toPage(items, idOf, pageSize));
+    }
+    
+    static Mono<List<Map<String, Object>>> fields(ReactiveMongoTemplate mongoTemplate, FieldSelection fields,
+                                                  Criteria filter) {
+        return find(mongoTemplate, fields, KeysetQueries.keysetQuery(filter, null)).collectList();
+    }
+    
+    static Mono<CursorPage<Map<String, Object>>> fieldsPage(ReactiveMongoTemplate mongoTemplate, FieldSelection fields,
+                                                            Criteria filter, String after, Integer limit) {
+        int pageSize = limit != null ? limit : KeysetQueries.DEFAULT_LIMIT;
+        KeysetQueries.checkLimit(pageSize);
+        return find(mongoTemplate, fields, KeysetQueries.keysetQuery(filter, after).limit(pageSize + 1))
+                .collectList()
+                .map(items -> KeysetQueries.toPage(items, FieldSelection::idOf, pageSize));
+    }
+    
+    static Mono<Map<String, Object>> fieldsOne(ReactiveMongoTemplate mongoTemplate, FieldSelection fields,
+                                               Criteria filter) {
+        return find(mongoTemplate, fields, new Query(filter).limit(1)).next();
+    }
+    
+    private static Flux<Map<String, Object>> find(ReactiveMongoTemplate mongoTemplate, FieldSelection fields,
+                                                  Query query) {
+        fields.storedFields().forEach(field -> query.fields().include(field));
+        return mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(fields.type()))
+                .map(fields::fromDocument);
+    }
+}
@@ -0,0 +1,44 @@
+package com.habitstack.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unordered bulk inserts that report the documents the server rejected instead of failing the
+ * whole batch, so one duplicate key does not hold back the rest of an import.
+ */
+@Component
+@RequiredArgsConstructor
+public class BulkInserts {
+    
+    private final MongoTemplate mongoTemplate;
+    
+    /**
+     * Inserts all documents in one round trip. Returns the server's error message for each
+     * rejected document, keyed by its position in {@code documents}; empty when all were written.
+     */
+    public Map<Integer, String> insertUnordered(Class<?> type, List<?> documents) {
+        if (documents.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type).insert(documents).execute();
+            return Map.of();
+        } catch (BulkOperationException e) {
+            if (e.getErrors().isEmpty()) {
+                // A write concern failure says nothing about individual documents
+                throw e;
+            }
+            Map<Integer, String> rejected = new HashMap<>();
+            e.getErrors().forEach(error -> rejected.put(error.getIndex(), error.getMessage()));
+            return rejected;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.habitstack.repository;
+
+import com.habitstack.model.CompletionEvent;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CompletionEventRepository extends MongoRepository<CompletionEvent, String> {
+}
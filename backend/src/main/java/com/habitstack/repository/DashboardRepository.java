@@ -0,0 +1,80 @@
+package com.habitstack.repository;
+
+import com.habitstack.dto.DashboardEntry;
+import com.habitstack.dto.DashboardSummary;
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.Owners;
+import com.habitstack.model.ProgressData;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only aggregations behind GET /dashboard. Stacks and their progress are joined with a
+ * single $lookup; nothing here writes, a missing progress document stays missing.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DashboardRepository {
+    
+    private final MongoTemplate mongoTemplate;
+    
+    public List<DashboardEntry> findPage(String ownerId, String after, int limit) {
+        List<Document> pipeline = new ArrayList<>();
+        pipeline.add(new Document("$match", KeysetQueries.keysetQuery(Owners.ownedBy(ownerId), after).getQueryObject()));
+        pipeline.add(new Document("$sort", new Document("_id", 1)));
+        pipeline.add(new Document("$limit", limit));
+        // Stacks created through the API have ObjectId keys while progress stores stack_id as a string
+        pipeline.add(new Document("$lookup", new Document("from", mongoTemplate.getCollectionName(ProgressData.class))
+                .append("let", new Document("stackId", new Document("$toString", "$_id")))
+                .append("pipeline", List.of(
+                        new Document("$match", new Document("$expr",
+                                new Document("$eq", List.of("$stack_id", "$$stackId")))),
+                        new Document("$limit", 1)))
+                .append("as", "progress")));
+        
+        List<DashboardEntry> entries = new ArrayList<>();
+        for (Document document : mongoTemplate.getCollection(mongoTemplate.getCollectionName(HabitStack.class))
+                .aggregate(pipeline)) {
+            List<Document> progress = document.getList("progress", Document.class);
+            document.remove("progress");
+            entries.add(DashboardEntry.builder()
+                    .stack(mongoTemplate.getConverter().read(HabitStack.class, document))
+                    .progress(progress.isEmpty() ? null : mongoTemplate.getConverter().read(ProgressData.class, progress.get(0)))
+                    .build());
+        }
+        return entries;
+    }
+    
+    public DashboardSummary summarize(String ownerId) {
+        Document habits = new Document("$ifNull", List.of("$habits", List.of()));
+        Document group = new Document("_id", null)
+                .append("total_stacks", new Document("$sum", 1))
+                .append("completed_stacks", new Document("$sum", new Document("$cond", List.of(
+                        new Document("$allElementsTrue", List.of(new Document("$map", new Document("input", habits)
+                                .append("in", "$$this.completed")))),
+                        1, 0))))
+                .append("total_habits", new Document("$sum", new Document("$size", habits)))
+                .append("completed_habits", new Document("$sum", new Document("$size", new Document("$filter",
+                        new Document("input", habits).append("cond", "$$this.completed")))));
+        
+        Document result = mongoTemplate.getCollection(mongoTemplate.getCollectionName(HabitStack.class))
+                .aggregate(List.of(
+                        new Document("$match", new Document(Owners.FIELD, ownerId)),
+                        new Document("$group", group)))
+                .first();
+        if (result == null) {
+            return DashboardSummary.builder().build();
+        }
+        return DashboardSummary.builder()
+                .totalStacks(((Number) result.get("total_stacks")).longValue())
+                .completedStacks(((Number) result.get("completed_stacks")).longValue())
+                .totalHabits(((Number) result.get("total_habits")).longValue())
+                .completedHabits(((Number) result.get("completed_habits")).longValue())
+                .build();
+    }
+}
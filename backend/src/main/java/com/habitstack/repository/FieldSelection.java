@@ -0,0 +1,155 @@
+package com.habitstack.repository;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.habitstack.exception.ValidationException;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.lang.reflect.Modifier;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A parsed {@code fields=} parameter: the requested JSON property names of one document type and
+ * the stored field each one maps to. {@code id} is always included so results stay addressable
+ * and pageable. Only stored properties can be selected; derived getters and ignored fields are
+ * rejected with the list of valid names.
+ */
+public final class FieldSelection {
+    
+    private static final String ID = "id";
+    private static final TypeReference<Map<String, Object>> MAP = new TypeReference<>() {};
+    
+    // JSON property name -> stored field name, per document type, in declaration order
+    private static final Map<Class<?>, Map<String, String>> PROPERTIES = new ConcurrentHashMap<>();
+    
+    private final Class<?> type;
+    private final Map<String, String> selected;
+    private final Map<String, String> jsonNames;
+    
+    private FieldSelection(Class<?> type, Map<String, String> selected) {
+        this.type = type;
+        this.selected = selected;
+        this.jsonNames = new LinkedHashMap<>();
+        selected.forEach((json, stored) -> jsonNames.put(stored, json));
+    }
+    
+    /**
+     * Parses a comma-separated list of JSON property names, or returns null when none were given.
+     */
+    public static FieldSelection of(Class<?> type, String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Map<String, String> properties = PROPERTIES.computeIfAbsent(type, FieldSelection::storedProperties);
+        Map<String, String> selected = new LinkedHashMap<>();
+        selected.put(ID, properties.get(ID));
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            String stored = properties.get(name);
+            if (stored == null) {
+                throw new ValidationException("fields",
+                        "unknown field '" + name + "', expected any of " + String.join(",", properties.keySet()));
+            }
+            selected.put(name, stored);
+        }
+        return new FieldSelection(type, selected);
+    }
+    
+    public Class<?> type() {
+        return type;
+    }
+    
+    public Collection<String> storedFields() {
+        return selected.values();
+    }
+    
+    /**
+     * Renames the stored fields of a projected document to their JSON names. ObjectIds become
+     * hex strings and dates LocalDateTime, matching how the mapped entity would serialise.
+     */
+    public Map<String, Object> fromDocument(Document document) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        document.forEach((key, value) -> {
+            String json = jsonNames.get(key);
+            if (json != null) {
+                result.put(json, plain(value));
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * Selects the requested properties from an entity that is already loaded, for result sets
+     * that do not come from a plain query (search).
+     */
+    public Map<String, Object> fromEntity(ObjectMapper objectMapper, Object entity) {
+        Map<String, Object> all = objectMapper.convertValue(entity, MAP);
+        Map<String, Object> result = new LinkedHashMap<>();
+        selected.keySet().forEach(json -> {
+            if (all.containsKey(json)) {
+                result.put(json, all.get(json));
+            }
+        });
+        return result;
+    }
+    
+    public static String idOf(Map<String, Object> document) {
+        return (String) document.get(ID);
+    }
+    
+    private static Object plain(Object value) {
+        if (value instanceof ObjectId objectId) {
+            return objectId.toHexString();
+        }
+        if (value instanceof Date date) {
+            return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+        }
+        if (value instanceof Document document) {
+            Map<String, Object> nested = new LinkedHashMap<>();
+            document.forEach((key, nestedValue) -> nested.put(key, plain(nestedValue)));
+            return nested;
+        }
+        if (value instanceof List<?> list) {
+            List<Object> items = new ArrayList<>(list.size());
+            list.forEach(item -> items.add(plain(item)));
+            return items;
+        }
+        return value;
+    }
+    
+    private static Map<String, String> storedProperties(Class<?> type) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        Arrays.stream(type.getDeclaredFields())
+                .filter(field -> !Modifier.isStatic(field.getModifiers()))
+                .filter(field -> !field.isAnnotationPresent(JsonIgnore.class))
+                .filter(field -> !field.isAnnotationPresent(Transient.class))
+                .forEach(field -> {
+                    JsonProperty jsonProperty = field.getAnnotation(JsonProperty.class);
+                    Field stored = field.getAnnotation(Field.class);
+                    String json = jsonProperty != null && !jsonProperty.value().isEmpty()
+                            ? jsonProperty.value() : field.getName();
+                    String storedName = field.isAnnotationPresent(Id.class) ? "_id"
+                            : stored != null && !stored.value().isEmpty() ? stored.value() : field.getName();
+                    properties.put(json, storedName);
+                });
+        return properties;
+    }
+}
@@ -4,10 +4,16 @@ import com.habitstack.model.HabitCategory;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
+// Every query is scoped to one owner and served by the unique {owner_id, name} index
 @Repository
 public interface HabitCategoryRepository extends MongoRepository<HabitCategory, String> {
-    Optional<HabitCategory> findByName(String name);
-    boolean existsByName(String name);
-}
\ No newline at end of file
+    List<HabitCategory> findByOwnerId(String ownerId);
+    Optional<HabitCategory> findByIdAndOwnerId(String id, String ownerId);
+    Optional<HabitCategory> findByOwnerIdAndName(String ownerId, String name);
+    boolean existsByOwnerId(String ownerId);
+    boolean existsByIdAndOwnerId(String id, String ownerId);
+    boolean existsByOwnerIdAndName(String ownerId, String name);
+}
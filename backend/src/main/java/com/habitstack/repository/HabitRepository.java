@@ -4,14 +4,20 @@ import com.habitstack.model.Habit;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+// Every query is scoped to one owner and served by an {owner_id, ...} index on Habit
 @Repository
 public interface HabitRepository extends MongoRepository<Habit, String> {
-    List<Habit> findByCategory(String category);
-    List<Habit> findByNameContainingIgnoreCase(String name);
-    List<Habit> findByCategoryAndNameContainingIgnoreCase(String category, String name);
-    Optional<Habit> findByName(String name);
-    boolean existsByName(String name);
-}
\ No newline at end of file
+    List<Habit> findByOwnerId(String ownerId);
+    Optional<Habit> findByIdAndOwnerId(String id, String ownerId);
+    List<Habit> findByOwnerIdAndIdIn(String ownerId, Collection<String> ids);
+    List<Habit> findByOwnerIdAndCategory(String ownerId, String category);
+    List<Habit> findByOwnerIdAndNameContainingIgnoreCase(String ownerId, String name);
+    List<Habit> findByOwnerIdAndCategoryAndNameContainingIgnoreCase(String ownerId, String category, String name);
+    boolean existsByIdAndOwnerId(String id, String ownerId);
+    boolean existsByOwnerIdAndName(String ownerId, String name);
+    long deleteByIdAndOwnerId(String id, String ownerId);
+}
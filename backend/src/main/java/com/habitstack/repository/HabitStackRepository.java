@@ -4,12 +4,17 @@ import com.habitstack.model.HabitStack;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+// Every query is scoped to one owner and served by an {owner_id, ...} index on HabitStack
 @Repository
-public interface HabitStackRepository extends MongoRepository<HabitStack, String> {
-    List<HabitStack> findByNameContainingIgnoreCase(String name);
-    Optional<HabitStack> findByName(String name);
-    boolean existsByName(String name);
-}
\ No newline at end of file
+public interface HabitStackRepository extends MongoRepository<HabitStack, String>, HabitStackRepositoryCustom {
+    List<HabitStack> findByOwnerId(String ownerId);
+    Optional<HabitStack> findByIdAndOwnerId(String id, String ownerId);
+    List<HabitStack> findByOwnerIdAndIdIn(String ownerId, Collection<String> ids);
+    List<HabitStack> findByOwnerIdAndNameContainingIgnoreCase(String ownerId, String name);
+    boolean existsByIdAndOwnerId(String id, String ownerId);
+    boolean existsByOwnerIdAndName(String ownerId, String name);
+}
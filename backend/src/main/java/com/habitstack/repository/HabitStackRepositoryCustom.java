@@ -0,0 +1,44 @@
+package com.habitstack.repository;
+
+import com.habitstack.dto.StackOperation;
+import com.habitstack.dto.StackSummary;
+import com.habitstack.model.HabitStack;
+import com.mongodb.bulk.BulkWriteResult;
+
+import java.util.List;
+
+public interface HabitStackRepositoryCustom {
+
+    /**
+     * Flips the completed flag of one habit inside a stack and refreshes last_completed
+     * in a single server-side findAndModify. Returns the updated stack, or null when the
+     * owner has no such stack or it does not contain the habit.
+     */
+    HabitStack toggleHabitCompletion(String ownerId, String stackId, String habitId);
+
+    /**
+     * Applies toggle and set-completed operations, possibly across many stacks, as one
+     * ordered bulkWrite. Operations whose stack or habit does not exist, or whose stack belongs
+     * to another owner, match nothing.
+     */
+    BulkWriteResult applyOperations(String ownerId, List<StackOperation> operations);
+
+    /**
+     * Removes a habit from every stack of the owner that references it and refreshes their
+     * counters, last_completed and versions, as one updateMany served by the multikey
+     * habits.habitId index. Returns the stacks changed, as they are after the update.
+     */
+    List<HabitStack> removeHabit(String ownerId, String habitId);
+
+    /**
+     * Deletes the owner's stack together with its progress, in one transaction when the server
+     * supports them. Returns false when the owner has no such stack.
+     */
+    boolean deleteWithProgress(String ownerId, String stackId);
+
+    /**
+     * Id, name, counters and last_completed of each of the owner's stacks in _id order, projected server-side so
+     * the habits array is never transferred. {@code after} and {@code limit} are optional.
+     */
+    List<StackSummary> findSummaries(String ownerId, String after, Integer limit);
+}
@@ -0,0 +1,214 @@
+package com.habitstack.repository;
+
+import com.habitstack.dto.StackOperation;
+import com.habitstack.dto.StackSummary;
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.Owners;
+import com.habitstack.model.ProgressData;
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.ClientSession;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class HabitStackRepositoryImpl implements HabitStackRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    // Whether the server is a replica set member or mongos; resolved on first use
+    private volatile Boolean transactionsSupported;
+
+    @Override
+    public HabitStack toggleHabitCompletion(String ownerId, String stackId, String habitId) {
+        return mongoTemplate.findAndModify(habitQuery(ownerId, stackId, habitId), toggleUpdate(habitId),
+                FindAndModifyOptions.options().returnNew(true), HabitStack.class);
+    }
+
+    @Override
+    public BulkWriteResult applyOperations(String ownerId, List<StackOperation> operations) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, HabitStack.class);
+        for (StackOperation operation : operations) {
+            AggregationUpdate update = operation.getType() == StackOperation.Type.TOGGLE
+                    ? toggleUpdate(operation.getHabitId())
+                    : setCompletedUpdate(operation.getHabitId(), operation.getCompleted());
+            bulk.updateOne(habitQuery(ownerId, operation.getStackId(), operation.getHabitId()), update);
+        }
+        return bulk.execute();
+    }
+
+    @Override
+    public List<HabitStack> removeHabit(String ownerId, String habitId) {
+        Query referencing = Query.query(Owners.ownedBy(ownerId).and("habits.habitId").is(habitId));
+        referencing.fields().include("_id");
+        List<String> stackIds = mongoTemplate.find(referencing, HabitStack.class).stream()
+                .map(HabitStack::getId)
+                .toList();
+        if (stackIds.isEmpty()) {
+            return List.of();
+        }
+
+        // Removing the last incomplete habit completes the stack, as a toggle would
+        Query query = Query.query(Owners.ownedBy(ownerId).and("_id").in(stackIds).and("habits.habitId").is(habitId));
+        AggregationUpdate update = AggregationUpdate.from(List.of(
+                removeHabitStage(habitId),
+                countsStage(),
+                touchLastCompletedStage(),
+                bumpVersionStage()));
+        mongoTemplate.updateMulti(query, update, HabitStack.class);
+        return mongoTemplate.find(Query.query(Owners.ownedBy(ownerId).and("_id").in(stackIds)), HabitStack.class);
+    }
+
+    @Override
+    public boolean deleteWithProgress(String ownerId, String stackId) {
+        Query stack = Query.query(Criteria.where("_id").is(stackId).and(Owners.FIELD).is(ownerId));
+        Query progress = Query.query(Owners.ownedBy(ownerId).and("stack_id").is(stackId));
+        if (supportsTransactions()) {
+            try (ClientSession session = mongoTemplate.getMongoDatabaseFactory()
+                    .getSession(ClientSessionOptions.builder().causallyConsistent(true).build())) {
+                MongoTemplate inSession = mongoTemplate.withSession(session);
+                return session.withTransaction(() -> {
+                    if (inSession.remove(stack, HabitStack.class).getDeletedCount() == 0) {
+                        return false;
+                    }
+                    inSession.remove(progress, ProgressData.class);
+                    return true;
+                });
+            }
+        }
+        // Standalone server: progress goes first, so a failure in between leaves a stack whose
+        // delete can be retried rather than progress nothing points to
+        mongoTemplate.remove(progress, ProgressData.class);
+        return mongoTemplate.remove(stack, HabitStack.class).getDeletedCount() > 0;
+    }
+
+    @Override
+    public List<StackSummary> findSummaries(String ownerId, String after, Integer limit) {
+        List<Document> pipeline = new ArrayList<>();
+        pipeline.add(new Document("$match", KeysetQueries.keysetQuery(Owners.ownedBy(ownerId), after).getQueryObject()));
+        pipeline.add(new Document("$sort", new Document("_id", 1)));
+        if (limit != null) {
+            pipeline.add(new Document("$limit", limit));
+        }
+        // Stacks saved before the counters existed have them computed here instead, still server-side
+        Document habits = new Document("$ifNull", List.of("$habits", List.of()));
+        pipeline.add(new Document("$project", new Document("name", 1)
+                .append("last_completed", 1)
+                .append("completed_count", new Document("$ifNull", List.of("$completed_count",
+                        new Document("$size", new Document("$filter", new Document("input", habits)
+                                .append("cond", "$$this.completed"))))))
+                .append("total_count", new Document("$ifNull", List.of("$total_count",
+                        new Document("$size", habits))))));
+
+        List<StackSummary> summaries = new ArrayList<>();
+        for (Document document : mongoTemplate.getCollection(mongoTemplate.getCollectionName(HabitStack.class))
+                .aggregate(pipeline)) {
+            Date lastCompleted = document.getDate("last_completed");
+            summaries.add(StackSummary.builder()
+                    .id(document.get("_id").toString())
+                    .name(document.getString("name"))
+                    .completedCount(((Number) document.get("completed_count")).intValue())
+                    .totalCount(((Number) document.get("total_count")).intValue())
+                    .lastCompleted(lastCompleted != null
+                            ? LocalDateTime.ofInstant(lastCompleted.toInstant(), ZoneId.systemDefault())
+                            : null)
+                    .build());
+        }
+        return summaries;
+    }
+
+    private boolean supportsTransactions() {
+        Boolean supported = transactionsSupported;
+        if (supported == null) {
+            Document hello = mongoTemplate.getDb().runCommand(new Document("hello", 1));
+            supported = hello.containsKey("setName") || "isdbgrid".equals(hello.getString("msg"));
+            transactionsSupported = supported;
+        }
+        return supported;
+    }
+
+    private static Query habitQuery(String ownerId, String stackId, String habitId) {
+        return Query.query(Criteria.where("_id").is(stackId).and(Owners.FIELD).is(ownerId).and("habits.habitId").is(habitId));
+    }
+
+    // Booleans cannot be flipped with $bit, so both updates run as pipelines: the first
+    // stage rewrites the matching element, the later ones see the new array.
+    private static AggregationUpdate toggleUpdate(String habitId) {
+        return AggregationUpdate.from(List.of(
+                habitCompletedStage(habitId, new Document("$not", List.of("$$h.completed"))),
+                countsStage(),
+                touchLastCompletedStage(),
+                bumpVersionStage()));
+    }
+
+    private static AggregationUpdate setCompletedUpdate(String habitId, boolean completed) {
+        return AggregationUpdate.from(List.of(
+                habitCompletedStage(habitId, completed),
+                countsStage(),
+                touchLastCompletedStage(),
+                bumpVersionStage()));
+    }
+
+    private static AggregationOperation habitCompletedStage(String habitId, Object completed) {
+        Document updated = new Document("$mergeObjects", List.of(
+                "$$h",
+                new Document("completed", completed)));
+
+        Document habits = new Document("$map", new Document("input", "$habits")
+                .append("as", "h")
+                .append("in", new Document("$cond", List.of(
+                        new Document("$eq", List.of("$$h.habitId", new Document("$literal", habitId))),
+                        updated,
+                        "$$h"))));
+
+        return context -> new Document("$set", new Document("habits", habits));
+    }
+
+    // The pipeline equivalent of $pull; a classic $pull could not recompute the counters in the same update
+    private static AggregationOperation removeHabitStage(String habitId) {
+        Document habits = new Document("$filter", new Document("input", "$habits")
+                .append("cond", new Document("$ne", List.of("$$this.habitId", new Document("$literal", habitId)))));
+
+        return context -> new Document("$set", new Document("habits", habits));
+    }
+
+    // Keeps the stored counters in step with the array in the same atomic update
+    private static AggregationOperation countsStage() {
+        Document completedCount = new Document("$size", new Document("$filter", new Document("input", "$habits")
+                .append("cond", "$$this.completed")));
+
+        return context -> new Document("$set", new Document("completed_count", completedCount)
+                .append("total_count", new Document("$size", "$habits")));
+    }
+
+    // Pipeline updates bypass Spring Data's @Version handling, so the ETag version is bumped here
+    private static AggregationOperation bumpVersionStage() {
+        Document next = new Document("$add", List.of(new Document("$ifNull", List.of("$version", 0L)), 1L));
+        return context -> new Document("$set", new Document("version", next));
+    }
+
+    // A stack left without habits is not completed, although $allElementsTrue holds for an empty array
+    private static AggregationOperation touchLastCompletedStage() {
+        Document lastCompleted = new Document("$cond", List.of(
+                new Document("$and", List.of(
+                        new Document("$gt", List.of(new Document("$size", "$habits"), 0)),
+                        new Document("$allElementsTrue", List.of("$habits.completed")))),
+                "$$NOW",
+                "$last_completed"));
+
+        return context -> new Document("$set", new Document("last_completed", lastCompleted));
+    }
+}
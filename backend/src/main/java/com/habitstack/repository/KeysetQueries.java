@@ -0,0 +1,89 @@
+package com.habitstack.repository;
+
+import com.habitstack.dto.CursorPage;
+import com.habitstack.exception.ValidationException;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Keyset pagination and cursor streaming over {@code _id}. Documents created through the
+ * API get ObjectId keys while seeded ones use UUID strings; BSON orders every string before
+ * every ObjectId, so a string cursor also has to let all ObjectId keys through.
+ */
+@Component
+@RequiredArgsConstructor
+public class KeysetQueries {
+    
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+    
+    private static final int OBJECT_ID_BSON_TYPE = 7;
+    
+    private final MongoTemplate mongoTemplate;
+    
+    public <T> CursorPage<T> findPage(Criteria filter, Class<T> type, Function<T, String> idOf,
+                                      String after, int limit) {
+        checkLimit(limit);
+        // One extra document tells us whether another page exists
+        List<T> items = mongoTemplate.find(keysetQuery(filter, after).limit(limit + 1), type);
+        return toPage(items, idOf, limit);
+    }
+    
+    public static void checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ValidationException("limit", "must be between 1 and " + MAX_LIMIT);
+        }
+    }
+    
+    /**
+     * Turns the result of a {@code limit + 1} keyset query into a page.
+     */
+    public static <T> CursorPage<T> toPage(List<T> items, Function<T, String> idOf, int limit) {
+        String nextCursor = null;
+        if (items.size() > limit) {
+            items = items.subList(0, limit);
+            nextCursor = idOf.apply(items.get(limit - 1));
+        }
+        return CursorPage.<T>builder().items(items).nextCursor(nextCursor).build();
+    }
+    
+    /**
+     * Streams every matching document from a server-side cursor. The caller must close the stream.
+     */
+    public <T> Stream<T> stream(Criteria filter, Class<T> type, String after) {
+        return mongoTemplate.stream(keysetQuery(filter, after), type);
+    }
+    
+    public static Query keysetQuery(Criteria filter, String after) {
+        Query query = new Query();
+        if (filter != null && after != null) {
+            query.addCriteria(new Criteria().andOperator(filter, afterCriteria(after)));
+        } else if (filter != null) {
+            query.addCriteria(filter);
+        } else if (after != null) {
+            query.addCriteria(afterCriteria(after));
+        }
+        return query.with(Sort.by(Sort.Direction.ASC, "_id"));
+    }
+    
+    /**
+     * Matches documents whose {@code _id} sorts after the given cursor.
+     */
+    public static Criteria afterCriteria(String after) {
+        if (ObjectId.isValid(after)) {
+            return Criteria.where("_id").gt(new ObjectId(after));
+        }
+        return new Criteria().orOperator(
+                Criteria.where("_id").gt(after),
+                Criteria.where("_id").type(OBJECT_ID_BSON_TYPE));
+    }
+}
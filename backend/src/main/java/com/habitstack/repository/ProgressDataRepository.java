@@ -4,10 +4,13 @@ import com.habitstack.model.ProgressData;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ProgressDataRepository extends MongoRepository<ProgressData, String> {
-    Optional<ProgressData> findByStackId(String stackId);
-    void deleteByStackId(String stackId);
-}
\ No newline at end of file
+    List<ProgressData> findByOwnerId(String ownerId);
+    Optional<ProgressData> findByIdAndOwnerId(String id, String ownerId);
+    Optional<ProgressData> findByOwnerIdAndStackId(String ownerId, String stackId);
+    boolean existsByIdAndOwnerId(String id, String ownerId);
+}
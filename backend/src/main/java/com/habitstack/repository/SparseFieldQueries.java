@@ -0,0 +1,57 @@
+package com.habitstack.repository;
+
+import com.habitstack.dto.CursorPage;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Runs queries for a {@link FieldSelection} with a server-side projection and returns the raw
+ * documents as JSON-named maps, skipping entity mapping entirely.
+ */
+@Component
+@RequiredArgsConstructor
+public class SparseFieldQueries {
+    
+    private static final String VERSION = "version";
+    
+    private final MongoTemplate mongoTemplate;
+    
+    public List<Map<String, Object>> find(FieldSelection fields, Criteria filter) {
+        return find(fields, KeysetQueries.keysetQuery(filter, null));
+    }
+    
+    public CursorPage<Map<String, Object>> findPage(FieldSelection fields, Criteria filter, String after, int limit) {
+        KeysetQueries.checkLimit(limit);
+        List<Map<String, Object>> items = find(fields, KeysetQueries.keysetQuery(filter, after).limit(limit + 1));
+        return KeysetQueries.toPage(items, FieldSelection::idOf, limit);
+    }
+    
+    public Optional<Map<String, Object>> findOne(FieldSelection fields, Criteria filter) {
+        return find(fields, new Query(filter).limit(1)).stream().findFirst();
+    }
+    
+    /**
+     * Reads only the @Version field of the matching document, for If-None-Match checks that
+     * should not load the whole document. Empty when there is no match or no version yet.
+     */
+    public Optional<Long> findVersion(Class<?> type, Criteria filter) {
+        return findOne(FieldSelection.of(type, VERSION), filter)
+                .map(document -> (Number) document.get(VERSION))
+                .map(Number::longValue);
+    }
+    
+    private List<Map<String, Object>> find(FieldSelection fields, Query query) {
+        fields.storedFields().forEach(field -> query.fields().include(field));
+        return mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(fields.type())).stream()
+                .map(fields::fromDocument)
+                .toList();
+    }
+}
@@ -0,0 +1,150 @@
+package com.habitstack.search;
+
+import com.habitstack.model.Habit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Search index over habit names and descriptions. Habits are small and change rarely, so the
+ * documents themselves are kept alongside the postings and searches never reach Mongo.
+ * The service keeps it current on create/update/delete and it is rebuilt periodically, through
+ * a JournaledSnapshot; like it, the index is only consistent per instance.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HabitSearchIndex {
+    
+    private final MongoTemplate mongoTemplate;
+    
+    private final JournaledSnapshot<Snapshot> snapshots = new JournaledSnapshot<>();
+    
+    public boolean isReady() {
+        return snapshots.isReady();
+    }
+    
+    @Scheduled(fixedDelayString = "${habitstack.search.rebuild-interval:PT10M}")
+    public void rebuild() {
+        Snapshot rebuilt = new Snapshot();
+        snapshots.rebuild(rebuilt, snapshot -> {
+            try (Stream<Habit> habits = mongoTemplate.stream(new Query(), Habit.class)) {
+                habits.forEach(snapshot::put);
+            }
+        });
+        log.info("Rebuilt habit search index with {} habits", rebuilt.size());
+    }
+    
+    public void index(Habit habit) {
+        snapshots.write(current -> current.put(habit));
+    }
+    
+    public void remove(String ownerId, String id) {
+        snapshots.write(current -> current.partition(ownerId).remove(id));
+    }
+    
+    /**
+     * The owner's habits whose name or description contains the query (name matches first).
+     * Only when nothing matches exactly are typo-tolerant matches returned instead.
+     */
+    public List<Habit> search(String ownerId, String query, String category, int limit) {
+        Partition partition = snapshots.current().partition(ownerId);
+        Predicate<String> filter = partition.categoryFilter(category);
+        
+        Set<String> ids = new LinkedHashSet<>(partition.names.searchExact(query, limit, filter));
+        if (ids.size() < limit) {
+            ids.addAll(partition.descriptions.searchExact(query, limit, filter));
+        }
+        if (ids.isEmpty()) {
+            ids.addAll(partition.names.searchFuzzy(query, limit, filter));
+            ids.addAll(partition.descriptions.searchFuzzy(query, limit, filter));
+        }
+        return partition.resolve(ids, limit);
+    }
+    
+    /**
+     * Top-k of the owner's habits for a search box: name prefixes first, falling back to fuzzy
+     * name matches.
+     */
+    public List<Habit> autocomplete(String ownerId, String prefix, String category, int limit) {
+        Partition partition = snapshots.current().partition(ownerId);
+        Predicate<String> filter = partition.categoryFilter(category);
+        
+        Set<String> ids = new LinkedHashSet<>(partition.names.searchExact(prefix, limit, filter));
+        if (ids.size() < limit) {
+            ids.addAll(partition.names.searchFuzzy(prefix, limit, filter));
+        }
+        return partition.resolve(ids, limit);
+    }
+    
+    // One partition per owner, so postings, and with them search cost, grow with the owner's
+    // habits rather than with everyone's
+    private static final class Snapshot {
+        private static final Partition EMPTY = new Partition();
+        
+        private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+        
+        void put(Habit habit) {
+            partitions.computeIfAbsent(habit.getOwnerId(), owner -> new Partition()).put(habit);
+        }
+        
+        Partition partition(String ownerId) {
+            return partitions.getOrDefault(ownerId, EMPTY);
+        }
+        
+        int size() {
+            return partitions.values().stream().mapToInt(partition -> partition.habits.size()).sum();
+        }
+    }
+    
+    private static final class Partition {
+        private final Map<String, Habit> habits = new ConcurrentHashMap<>();
+        private final TrigramIndex names = new TrigramIndex();
+        private final TrigramIndex descriptions = new TrigramIndex();
+        
+        void put(Habit habit) {
+            habits.put(habit.getId(), habit);
+            names.put(habit.getId(), habit.getName());
+            descriptions.put(habit.getId(), habit.getDescription());
+        }
+        
+        void remove(String id) {
+            habits.remove(id);
+            names.remove(id);
+            descriptions.remove(id);
+        }
+        
+        Predicate<String> categoryFilter(String category) {
+            if (category == null) {
+                return id -> true;
+            }
+            return id -> {
+                Habit habit = habits.get(id);
+                return habit != null && category.equals(habit.getCategory());
+            };
+        }
+        
+        List<Habit> resolve(Set<String> ids, int limit) {
+            List<Habit> results = new ArrayList<>(Math.min(ids.size(), limit));
+            ids.stream()
+                    .map(habits::get)
+                    .filter(Objects::nonNull)
+                    .limit(limit)
+                    .forEach(results::add);
+            return results;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.habitstack.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The snapshot a search index serves, replaced wholesale by periodic rebuilds. Writes made while
+ * a rebuild streams from Mongo go to the served snapshot and to a journal, which is replayed onto
+ * the rebuilt snapshot before it is swapped in, so the swap does not drop them.
+ * <p>
+ * Only writes made through this instance are journaled; the index is consistent per instance,
+ * and writes made through other instances show up with the next rebuild.
+ */
+final class JournaledSnapshot<S> {
+    
+    private volatile S current;
+    // Writes made while a rebuild is streaming; null otherwise. Guarded by this.
+    private List<Consumer<S>> journal;
+    
+    boolean isReady() {
+        return current != null;
+    }
+    
+    S current() {
+        return current;
+    }
+    
+    /**
+     * Fills {@code rebuilt} with {@code load}, replays the writes made in the meantime onto it and
+     * starts serving it.
+     */
+    void rebuild(S rebuilt, Consumer<S> load) {
+        synchronized (this) {
+            journal = new ArrayList<>();
+        }
+        try {
+            load.accept(rebuilt);
+            synchronized (this) {
+                // The load may have read a document before or after a journaled write; replaying
+                // in order leaves the state of the last write either way
+                journal.forEach(write -> write.accept(rebuilt));
+                current = rebuilt;
+            }
+        } finally {
+            synchronized (this) {
+                journal = null;
+            }
+        }
+    }
+    
+    synchronized void write(Consumer<S> write) {
+        if (current != null) {
+            write.accept(current);
+        }
+        if (journal != null) {
+            journal.add(write);
+        }
+    }
+}
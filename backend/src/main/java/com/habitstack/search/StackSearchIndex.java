@@ -0,0 +1,118 @@
+package com.habitstack.search;
+
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.Owners;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Search index over stack names. Stacks change on every toggle, so only names are held here;
+ * callers load the matching documents by id. Kept current and rebuilt like HabitSearchIndex,
+ * and like it only consistent per instance.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StackSearchIndex {
+    
+    private final MongoTemplate mongoTemplate;
+    
+    private final JournaledSnapshot<Snapshot> snapshots = new JournaledSnapshot<>();
+    
+    public boolean isReady() {
+        return snapshots.isReady();
+    }
+    
+    @Scheduled(fixedDelayString = "${habitstack.search.rebuild-interval:PT10M}")
+    public void rebuild() {
+        Query query = new Query();
+        query.fields().include("name").include(Owners.FIELD);
+        Snapshot rebuilt = new Snapshot();
+        snapshots.rebuild(rebuilt, snapshot -> {
+            try (Stream<HabitStack> stacks = mongoTemplate.stream(query, HabitStack.class)) {
+                stacks.forEach(stack -> snapshot.put(stack.getOwnerId(), stack.getId(), stack.getName()));
+            }
+        });
+        log.info("Rebuilt stack search index with {} stacks", rebuilt.size());
+    }
+    
+    public void index(HabitStack stack) {
+        snapshots.write(current -> current.put(stack.getOwnerId(), stack.getId(), stack.getName()));
+    }
+    
+    public void remove(String ownerId, String id) {
+        snapshots.write(current -> current.partition(ownerId).remove(id));
+    }
+    
+    /**
+     * Ids of the owner's stacks whose name contains the query, or typo-tolerant matches when
+     * none does.
+     */
+    public List<String> search(String ownerId, String query, int limit) {
+        Partition partition = snapshots.current().partition(ownerId);
+        List<String> ids = partition.index.searchExact(query, limit, id -> true);
+        return ids.isEmpty() ? partition.index.searchFuzzy(query, limit, id -> true) : ids;
+    }
+    
+    public Map<String, String> autocomplete(String ownerId, String prefix, int limit) {
+        Partition partition = snapshots.current().partition(ownerId);
+        Set<String> ids = new LinkedHashSet<>(partition.index.searchExact(prefix, limit, id -> true));
+        if (ids.size() < limit) {
+            ids.addAll(partition.index.searchFuzzy(prefix, limit, id -> true));
+        }
+        Map<String, String> suggestions = new LinkedHashMap<>();
+        ids.stream().limit(limit).forEach(id -> {
+            String name = partition.names.get(id);
+            if (name != null) {
+                suggestions.put(id, name);
+            }
+        });
+        return suggestions;
+    }
+    
+    // One partition per owner, as in HabitSearchIndex
+    private static final class Snapshot {
+        private static final Partition EMPTY = new Partition();
+        
+        private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+        
+        void put(String ownerId, String id, String name) {
+            partitions.computeIfAbsent(ownerId, owner -> new Partition()).put(id, name);
+        }
+        
+        Partition partition(String ownerId) {
+            return partitions.getOrDefault(ownerId, EMPTY);
+        }
+        
+        int size() {
+            return partitions.values().stream().mapToInt(partition -> partition.names.size()).sum();
+        }
+    }
+    
+    private static final class Partition {
+        private final Map<String, String> names = new ConcurrentHashMap<>();
+        private final TrigramIndex index = new TrigramIndex();
+        
+        void put(String id, String name) {
+            names.put(id, name);
+            index.put(id, name);
+        }
+        
+        void remove(String id) {
+            names.remove(id);
+            index.remove(id);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.habitstack.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * In-memory n-gram index over one text field. Every 1-, 2- and 3-gram of the lowercased
+ * text is posted, so a query of up to three characters is answered by a single posting
+ * list, and longer queries intersect their trigram postings before a final contains check.
+ * Fuzzy lookups rank documents by the share of query trigrams they contain.
+ */
+public class TrigramIndex {
+    
+    private static final int GRAM = 3;
+    private static final double FUZZY_THRESHOLD = 0.5;
+    
+    private static final Comparator<Hit> BEST_FIRST = Comparator.comparingDouble(Hit::score).reversed()
+            .thenComparingInt(hit -> hit.text().length())
+            .thenComparing(Hit::id);
+    
+    private final Map<String, String> texts = new HashMap<>();
+    private final Map<String, Set<String>> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    public void put(String id, String text) {
+        String normalized = normalize(text);
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            if (normalized.isEmpty()) {
+                return;
+            }
+            texts.put(id, normalized);
+            for (String gram : grams(normalized, 1)) {
+                postings.computeIfAbsent(gram, key -> new HashSet<>()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Ids whose text contains the query, best first: whole-text prefix, then word prefix, then anywhere.
+     */
+    public List<String> searchExact(String query, int limit, Predicate<String> filter) {
+        String q = normalize(query);
+        if (q.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        
+        lock.readLock().lock();
+        try {
+            PriorityQueue<Hit> top = new PriorityQueue<>(BEST_FIRST.reversed());
+            for (String id : exactCandidates(q)) {
+                String text = texts.get(id);
+                if ((q.length() > GRAM && !text.contains(q)) || !filter.test(id)) {
+                    continue;
+                }
+                offer(top, new Hit(id, text, exactScore(text, q)), limit);
+            }
+            return drain(top);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Typo-tolerant lookup: ids sharing at least half of the query's trigrams, most similar first.
+     */
+    public List<String> searchFuzzy(String query, int limit, Predicate<String> filter) {
+        String q = normalize(query);
+        if (q.length() < GRAM || limit <= 0) {
+            return List.of();
+        }
+        
+        lock.readLock().lock();
+        try {
+            Set<String> queryGrams = grams(q, GRAM);
+            Map<String, Integer> shared = new HashMap<>();
+            for (String gram : queryGrams) {
+                for (String id : postings.getOrDefault(gram, Set.of())) {
+                    shared.merge(id, 1, Integer::sum);
+                }
+            }
+            
+            PriorityQueue<Hit> top = new PriorityQueue<>(BEST_FIRST.reversed());
+            shared.forEach((id, count) -> {
+                double similarity = (double) count / queryGrams.size();
+                if (similarity >= FUZZY_THRESHOLD && filter.test(id)) {
+                    offer(top, new Hit(id, texts.get(id), similarity), limit);
+                }
+            });
+            return drain(top);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private Set<String> exactCandidates(String q) {
+        if (q.length() <= GRAM) {
+            return postings.getOrDefault(q, Set.of());
+        }
+        // Any trigram posting is a superset of the matches; the smallest one is cheapest to verify
+        Set<String> smallest = null;
+        for (String gram : grams(q, GRAM)) {
+            Set<String> ids = postings.get(gram);
+            if (ids == null) {
+                return Set.of();
+            }
+            if (smallest == null || ids.size() < smallest.size()) {
+                smallest = ids;
+            }
+        }
+        return smallest;
+    }
+    
+    private void removeLocked(String id) {
+        String previous = texts.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (String gram : grams(previous, 1)) {
+            Set<String> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+    
+    private static double exactScore(String text, String q) {
+        if (text.startsWith(q)) {
+            return 3;
+        }
+        return text.contains(" " + q) ? 2 : 1;
+    }
+    
+    private static void offer(PriorityQueue<Hit> top, Hit hit, int limit) {
+        if (top.size() < limit) {
+            top.add(hit);
+        } else if (BEST_FIRST.compare(hit, top.peek()) < 0) {
+            top.poll();
+            top.add(hit);
+        }
+    }
+    
+    private static List<String> drain(PriorityQueue<Hit> top) {
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(BEST_FIRST);
+        List<String> ids = new ArrayList<>(hits.size());
+        hits.forEach(hit -> ids.add(hit.id()));
+        return ids;
+    }
+    
+    private static Set<String> grams(String text, int minLength) {
+        Set<String> grams = new HashSet<>();
+        for (int length = minLength; length <= GRAM; length++) {
+            for (int start = 0; start + length <= text.length(); start++) {
+                grams.add(text.substring(start, start + length));
+            }
+        }
+        return grams;
+    }
+    
+    static String normalize(String text) {
+        return text == null ? "" : text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+    
+    private record Hit(String id, String text, double score) {
+    }
+}
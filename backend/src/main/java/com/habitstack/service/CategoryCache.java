@@ -0,0 +1,154 @@
+package com.habitstack.service;
+
+import com.habitstack.model.HabitCategory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache for categories, per owner: the owner's full list plus bounded LRU lookups
+ * by id and name. Local writes invalidate the writing owner's entries; entries also expire after
+ * a TTL so writes made through another instance are picked up.
+ */
+@Component
+public class CategoryCache {
+    
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<String, Entry<CategoryList>> allByOwner;
+    private final Map<String, Entry<HabitCategory>> byId;
+    private final Map<String, Entry<HabitCategory>> byName;
+    
+    // Bumped on invalidation so a load that raced with a write is not cached
+    private final AtomicLong generation = new AtomicLong();
+    
+    public CategoryCache(@Value("${habitstack.cache.categories.max-entries:1000}") int maxEntries,
+                         @Value("${habitstack.cache.categories.ttl:PT5M}") Duration ttl) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.allByOwner = lruMap();
+        this.byId = lruMap();
+        this.byName = lruMap();
+    }
+    
+    public CategoryList getAll(String ownerId, Supplier<List<HabitCategory>> loader) {
+        Entry<CategoryList> cached;
+        synchronized (this) {
+            cached = allByOwner.get(ownerId);
+        }
+        if (cached != null && !cached.isExpired()) {
+            return cached.value();
+        }
+        
+        long loadGeneration = generation.get();
+        CategoryList loaded = CategoryList.of(loader.get());
+        synchronized (this) {
+            if (generation.get() == loadGeneration) {
+                allByOwner.put(ownerId, new Entry<>(loaded, System.nanoTime() + ttlNanos));
+            }
+        }
+        return loaded;
+    }
+    
+    public Optional<HabitCategory> getById(String ownerId, String id, Function<String, Optional<HabitCategory>> loader) {
+        return lookup(byId, ownerId, id, loader);
+    }
+    
+    public Optional<HabitCategory> getByName(String ownerId, String name, Function<String, Optional<HabitCategory>> loader) {
+        return lookup(byName, ownerId, name, loader);
+    }
+    
+    public void invalidate(String ownerId) {
+        generation.incrementAndGet();
+        String prefix = key(ownerId, "");
+        synchronized (this) {
+            allByOwner.remove(ownerId);
+            byId.keySet().removeIf(key -> key.startsWith(prefix));
+            byName.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+    
+    private Optional<HabitCategory> lookup(Map<String, Entry<HabitCategory>> map, String ownerId, String key,
+                                           Function<String, Optional<HabitCategory>> loader) {
+        Entry<HabitCategory> cached;
+        synchronized (this) {
+            cached = map.get(key(ownerId, key));
+        }
+        if (cached != null && !cached.isExpired()) {
+            return Optional.of(cached.value());
+        }
+        
+        long loadGeneration = generation.get();
+        Optional<HabitCategory> loaded = loader.apply(key);
+        loaded.ifPresent(category -> {
+            synchronized (this) {
+                if (generation.get() == loadGeneration) {
+                    Entry<HabitCategory> entry = new Entry<>(category, System.nanoTime() + ttlNanos);
+                    byId.put(key(ownerId, category.getId()), entry);
+                    byName.put(key(ownerId, category.getName()), entry);
+                }
+            }
+        });
+        return loaded;
+    }
+    
+    // Owner ids come from a header, so the separator is one that cannot appear in it
+    private static String key(String ownerId, String key) {
+        return ownerId + '\n' + key;
+    }
+    
+    private <V> Map<String, Entry<V>> lruMap() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+    
+    private record Entry<V>(V value, long expiresAtNanos) {
+        boolean isExpired() {
+            return System.nanoTime() - expiresAtNanos > 0;
+        }
+    }
+    
+    /**
+     * Snapshot of all categories with an ETag derived from their content, so every instance
+     * hands out the same tag for the same data. The tag is a SHA-256 digest: a 32-bit hash code
+     * collides often enough that a changed list could be answered with 304.
+     */
+    public record CategoryList(List<HabitCategory> categories, String etag) {
+        static CategoryList of(List<HabitCategory> categories) {
+            List<HabitCategory> snapshot = List.copyOf(categories);
+            return new CategoryList(snapshot, "\"" + digest(snapshot) + "\"");
+        }
+        
+        // toString() lists every field, so any change to a category changes the digest
+        private static String digest(List<HabitCategory> categories) {
+            MessageDigest sha256;
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // Every Java platform is required to provide SHA-256
+                throw new IllegalStateException(e);
+            }
+            for (HabitCategory category : categories) {
+                sha256.update(category.toString().getBytes(StandardCharsets.UTF_8));
+                sha256.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(sha256.digest());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.habitstack.service;
+
+import com.habitstack.model.CompletionEvent;
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.ProcessorCheckpoint;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Folds the completion event log into ProgressData in batches, resuming from a checkpoint.
+ * Events become ProgressDelta updates, whose streak rules make reprocessing an event harmless,
+ * which is what makes saving the checkpoint after the progress write safe. Progress and
+ * checkpoint are written through ProgressWriteBuffer, which merges the batches of a few seconds
+ * into one write per stack.
+ * <p>
+ * Only one instance processes at a time, guarded by a lease on the checkpoint document.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CompletionEventProcessor {
+    
+    static final String CHECKPOINT_ID = "completion-events";
+    private static final Duration LEASE = Duration.ofSeconds(30);
+    
+    private final MongoTemplate mongoTemplate;
+    private final ProcessorLeases processorLeases;
+    private final ProgressWriteBuffer progressWriteBuffer;
+    
+    @Value("${habitstack.progress.batch-size:500}")
+    private int batchSize;
+    
+    // ObjectIds from different instances are only roughly ordered; events younger than this
+    // are left for the next run so a late, lower id is not skipped past
+    @Value("${habitstack.progress.settle-time:PT2S}")
+    private Duration settleTime;
+    
+    @Scheduled(fixedDelayString = "${habitstack.progress.processor-interval:PT1S}")
+    public void processPending() {
+        if (!processorLeases.acquire(CHECKPOINT_ID, LEASE)) {
+            // Another instance holds the lease; write out what was folded while this one had it
+            progressWriteBuffer.flushPending();
+            return;
+        }
+        int processed;
+        do {
+            processed = processBatch();
+        } while (processed == batchSize && processorLeases.acquire(CHECKPOINT_ID, LEASE));
+    }
+    
+    int processBatch() {
+        int capacity = progressWriteBuffer.remainingCapacity();
+        if (capacity == 0) {
+            progressWriteBuffer.flushPending();
+            capacity = progressWriteBuffer.remainingCapacity();
+            if (capacity == 0) {
+                // Flushing keeps failing; leave the events in the log instead of growing the buffer
+                return 0;
+            }
+        }
+        String lastEventId = progressWriteBuffer.lastEventId().orElseGet(() -> {
+            ProcessorCheckpoint checkpoint = mongoTemplate.findById(CHECKPOINT_ID, ProcessorCheckpoint.class);
+            return checkpoint != null ? checkpoint.getLastEventId() : null;
+        });
+        
+        Criteria range = Criteria.where("_id").lt(new ObjectId(Date.from(Instant.now().minus(settleTime))));
+        if (lastEventId != null) {
+            range = range.gt(new ObjectId(lastEventId));
+        }
+        Query query = Query.query(range).with(Sort.by(Sort.Direction.ASC, "_id")).limit(Math.min(batchSize, capacity));
+        List<CompletionEvent> events = mongoTemplate.find(query, CompletionEvent.class);
+        if (events.isEmpty()) {
+            return 0;
+        }
+        
+        // Events outlive their stacks; folding those of deleted ones would bring their progress back
+        Set<String> stackIds = events.stream().map(CompletionEvent::getStackId).collect(Collectors.toSet());
+        Query existing = Query.query(Criteria.where("_id").in(stackIds));
+        existing.fields().include("_id");
+        Set<String> liveStackIds = mongoTemplate.find(existing, HabitStack.class).stream()
+                .map(HabitStack::getId)
+                .collect(Collectors.toSet());
+        
+        progressWriteBuffer.update(events.stream().filter(event -> liveStackIds.contains(event.getStackId())).toList(),
+                events.get(events.size() - 1).getId());
+        log.debug("Processed {} completion events", events.size());
+        return events.size();
+    }
+}
@@ -0,0 +1,269 @@
+package com.habitstack.service;
+
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.ProgressData;
+import com.habitstack.repository.KeysetQueries;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rolls stacks over to a new day once local midnight has passed in their timezone: habits are
+ * marked incomplete, and progress drops the day that left the week window and loses its streak
+ * if yesterday was missed. Stacks are bucketed by timezone, and each bucket is walked in
+ * partitions of {@code habitstack.rollover.partition-size} ids, at most {@code concurrency} of
+ * them written in parallel.
+ * <p>
+ * A partition's progress is written first and its stacks last, in the same update that advances
+ * rollover_date. A pass cut short by a crash is therefore resumed by the next one re-selecting
+ * the stacks still behind, and the progress update, derived from completion_days alone, is safe
+ * to repeat. Only one instance runs passes at a time, guarded by a lease.
+ */
+@Slf4j
+@Component
+public class DailyRollover {
+    
+    static final String CHECKPOINT_ID = "daily-rollover";
+    private static final Duration LEASE = Duration.ofMinutes(1);
+    private static final int WEEK = 7;
+    
+    private final MongoTemplate mongoTemplate;
+    private final ProcessorLeases processorLeases;
+    private final ProgressWriteBuffer progressWriteBuffer;
+    // Its own threads: on the shared task executor, passes queued behind SSE and NDJSON streams
+    private final ExecutorService executor;
+    private final int partitionSize;
+    private final int concurrency;
+    private final Semaphore permits;
+    
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicInteger partitionsInFlight = new AtomicInteger();
+    private final AtomicInteger bucketsPending = new AtomicInteger();
+    private final Counter stacksRolledOver;
+    private final Counter partitionsFailed;
+    private final Timer bucketTimer;
+    
+    public DailyRollover(MongoTemplate mongoTemplate,
+                         ProcessorLeases processorLeases,
+                         ProgressWriteBuffer progressWriteBuffer,
+                         MeterRegistry meterRegistry,
+                         @Value("${habitstack.rollover.partition-size:1000}") int partitionSize,
+                         @Value("${habitstack.rollover.concurrency:4}") int concurrency) {
+        this.mongoTemplate = mongoTemplate;
+        this.processorLeases = processorLeases;
+        this.progressWriteBuffer = progressWriteBuffer;
+        // One thread runs the pass, the others write its partitions
+        this.executor = Executors.newFixedThreadPool(concurrency + 1, new CustomizableThreadFactory("rollover-"));
+        this.partitionSize = partitionSize;
+        this.concurrency = concurrency;
+        this.permits = new Semaphore(concurrency);
+        
+        this.stacksRolledOver = Counter.builder("habitstack.rollover.stacks")
+                .description("Stacks rolled over to a new local day")
+                .register(meterRegistry);
+        this.partitionsFailed = Counter.builder("habitstack.rollover.partitions.failed")
+                .description("Partitions whose writes failed and are left for the next pass")
+                .register(meterRegistry);
+        this.bucketTimer = Timer.builder("habitstack.rollover.bucket")
+                .description("Time to roll over all due stacks of one timezone")
+                .register(meterRegistry);
+        Gauge.builder("habitstack.rollover.partitions.in.flight", partitionsInFlight, AtomicInteger::get)
+                .description("Partitions being written right now")
+                .register(meterRegistry);
+        Gauge.builder("habitstack.rollover.buckets.pending", bucketsPending, AtomicInteger::get)
+                .description("Timezones still to be checked in the current pass")
+                .register(meterRegistry);
+    }
+    
+    @Scheduled(fixedDelayString = "${habitstack.rollover.check-interval:PT1M}")
+    public void checkForRollover() {
+        // A pass can take minutes, so it runs off the scheduler thread the event processor shares
+        if (running.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    runPass();
+                } finally {
+                    running.set(false);
+                }
+            });
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    void runPass() {
+        if (!processorLeases.acquire(CHECKPOINT_ID, LEASE)) {
+            return;
+        }
+        // Writes progress folded before midnight first, so the streaks it extends are the ones checked here
+        progressWriteBuffer.flushPending();
+        
+        Set<String> timezones = new LinkedHashSet<>();
+        // Stacks without a timezone follow the server's
+        timezones.add(null);
+        timezones.addAll(mongoTemplate.findDistinct(new Query(), "timezone", HabitStack.class, String.class));
+        
+        bucketsPending.set(timezones.size());
+        try {
+            for (String timezone : timezones) {
+                if (!processorLeases.acquire(CHECKPOINT_ID, LEASE)) {
+                    log.info("Lost the rollover lease; remaining timezones are left to its holder");
+                    return;
+                }
+                rollOverBucket(timezone);
+                bucketsPending.decrementAndGet();
+            }
+        } catch (DataAccessException e) {
+            log.error("Rollover pass failed, resuming on the next check: {}", e.getMessage(), e);
+        } finally {
+            bucketsPending.set(0);
+        }
+    }
+    
+    private void rollOverBucket(String timezone) {
+        ZoneId zone;
+        try {
+            zone = timezone != null ? ZoneId.of(timezone) : ZoneId.systemDefault();
+        } catch (DateTimeException e) {
+            log.warn("Skipping stacks with unknown timezone {}", timezone);
+            return;
+        }
+        LocalDate today = LocalDate.now(zone);
+        
+        // Stacks stored before rollover existed start their first cycle today instead of being reset
+        mongoTemplate.updateMulti(Query.query(Criteria.where("timezone").is(timezone).and("rollover_date").is(null)),
+                Update.update("rollover_date", today), HabitStack.class);
+        
+        // Usually only yesterday; walking one date at a time keeps the _id order on the index
+        List<LocalDate> dueDates = mongoTemplate.findDistinct(
+                Query.query(Criteria.where("timezone").is(timezone).and("rollover_date").lt(today)),
+                "rollover_date", HabitStack.class, LocalDate.class);
+        if (dueDates.isEmpty()) {
+            return;
+        }
+        
+        Timer.Sample sample = Timer.start();
+        long scheduled = 0;
+        try {
+            for (LocalDate dueDate : dueDates) {
+                scheduled += schedulePartitions(Criteria.where("timezone").is(timezone).and("rollover_date").is(dueDate), today);
+            }
+        } finally {
+            // Every permit back means every partition of this bucket has finished
+            permits.acquireUninterruptibly(concurrency);
+            permits.release(concurrency);
+            sample.stop(bucketTimer);
+        }
+        log.info("Rolled over {} stacks in timezone {} to {}", scheduled, zone, today);
+    }
+    
+    private long schedulePartitions(Criteria due, LocalDate today) {
+        long scheduled = 0;
+        String after = null;
+        List<HabitStack> partition;
+        do {
+            Query query = KeysetQueries.keysetQuery(due, after).limit(partitionSize);
+            query.fields().include("_id");
+            partition = mongoTemplate.find(query, HabitStack.class);
+            if (partition.isEmpty()) {
+                break;
+            }
+            List<String> stackIds = partition.stream().map(HabitStack::getId).toList();
+            after = stackIds.get(stackIds.size() - 1);
+            
+            permits.acquireUninterruptibly();
+            partitionsInFlight.incrementAndGet();
+            executor.execute(() -> rollOverPartition(stackIds, today));
+            scheduled += stackIds.size();
+        } while (partition.size() == partitionSize && processorLeases.acquire(CHECKPOINT_ID, LEASE));
+        return scheduled;
+    }
+    
+    private void rollOverPartition(List<String> stackIds, LocalDate today) {
+        try {
+            mongoTemplate.updateMulti(Query.query(Criteria.where("stack_id").in(stackIds)),
+                    progressRollover(today), ProgressData.class);
+            long rolledOver = mongoTemplate.updateMulti(
+                    Query.query(Criteria.where("_id").in(stackIds).and("rollover_date").lt(today)),
+                    stackRollover(today), HabitStack.class).getModifiedCount();
+            stacksRolledOver.increment(rolledOver);
+        } catch (DataAccessException e) {
+            partitionsFailed.increment();
+            log.error("Failed to roll over {} stacks, retrying on the next pass: {}", stackIds.size(), e.getMessage(), e);
+        } finally {
+            partitionsInFlight.decrementAndGet();
+            permits.release();
+        }
+    }
+    
+    private AggregationUpdate stackRollover(LocalDate today) {
+        Document habits = new Document("$ifNull", List.of("$habits", List.of()));
+        Document reset = new Document("$map", new Document("input", habits)
+                .append("in", new Document("$mergeObjects", List.of("$$this", new Document("completed", false)))));
+        Document set = new Document("habits", reset)
+                .append("completed_count", 0)
+                .append("total_count", new Document("$size", habits))
+                .append("rollover_date", toMongo(today))
+                .append("version", nextVersion());
+        return AggregationUpdate.from(List.of(context -> new Document("$set", set)));
+    }
+    
+    // Mirrors the week window and streak rule of ProgressDelta
+    private AggregationUpdate progressRollover(LocalDate today) {
+        Document days = new Document("$ifNull", List.of("$completion_days", List.of()));
+        List<Object> week = new ArrayList<>(WEEK);
+        for (int daysAgo = WEEK - 1; daysAgo >= 0; daysAgo--) {
+            week.add(new Document("$in", List.of(toMongo(today.minusDays(daysAgo)), days)));
+        }
+        Document streakAlive = new Document("$or", List.of(
+                new Document("$in", List.of(toMongo(today), days)),
+                new Document("$in", List.of(toMongo(today.minusDays(1)), days))));
+        Document set = new Document("last_week_progress", week)
+                .append("current_streak", new Document("$cond", List.of(streakAlive, "$current_streak", 0)))
+                .append("completion_days", new Document("$filter", new Document("input", days)
+                        .append("cond", new Document("$gte", List.of("$$this", toMongo(today.minusDays(WEEK - 1)))))))
+                .append("updated_at", "$$NOW")
+                .append("version", nextVersion());
+        return AggregationUpdate.from(List.of(context -> new Document("$set", set)));
+    }
+    
+    private static Document nextVersion() {
+        return new Document("$add", List.of(new Document("$ifNull", List.of("$version", 0L)), 1L));
+    }
+    
+    // Raw pipeline stages skip Spring's conversions, so dates are stored the way entities store them
+    private Object toMongo(LocalDate date) {
+        return mongoTemplate.getConverter().convertToMongoType(date);
+    }
+}
@@ -0,0 +1,50 @@
+package com.habitstack.service;
+
+import com.habitstack.dto.DashboardEntry;
+import com.habitstack.dto.DashboardResponse;
+import com.habitstack.exception.DatabaseException;
+import com.habitstack.model.ProgressData;
+import com.habitstack.repository.DashboardRepository;
+import com.habitstack.repository.KeysetQueries;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DashboardService {
+    
+    private final DashboardRepository dashboardRepository;
+    
+    public DashboardResponse getDashboard(String ownerId, String after, int limit) {
+        KeysetQueries.checkLimit(limit);
+        log.debug("Fetching dashboard page after {} with limit {}", after, limit);
+        try {
+            // One extra stack tells us whether another page exists
+            List<DashboardEntry> entries = dashboardRepository.findPage(ownerId, after, limit + 1);
+            String nextCursor = null;
+            if (entries.size() > limit) {
+                entries = entries.subList(0, limit);
+                nextCursor = entries.get(limit - 1).getStack().getId();
+            }
+            
+            // Stacks without a progress document get an unsaved default, keeping reads read-only
+            entries.stream()
+                    .filter(entry -> entry.getProgress() == null)
+                    .forEach(entry -> entry.setProgress(ProgressData.unsaved(ownerId, entry.getStack().getId())));
+            
+            return DashboardResponse.builder()
+                    .items(entries)
+                    .nextCursor(nextCursor)
+                    .summary(after == null ? dashboardRepository.summarize(ownerId) : null)
+                    .build();
+        } catch (DataAccessException e) {
+            log.error("Database error while fetching dashboard: {}", e.getMessage(), e);
+            throw new DatabaseException("Failed to fetch dashboard", e);
+        }
+    }
+}
@@ -1,30 +1,47 @@
 package com.habitstack.service;
 
+import com.habitstack.dto.ImportReport;
 import com.habitstack.exception.DatabaseException;
 import com.habitstack.exception.ResourceAlreadyExistsException;
 import com.habitstack.exception.ResourceNotFoundException;
 import com.habitstack.model.HabitCategory;
+import com.habitstack.model.Owners;
 import com.habitstack.repository.HabitCategoryRepository;
+import com.habitstack.repository.KeysetQueries;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
+@Timed(ServiceMetrics.TIMER)
 public class HabitCategoryService {
     
     private final HabitCategoryRepository categoryRepository;
+    private final CategoryCache categoryCache;
+    private final NdjsonImporter ndjsonImporter;
+    private final KeysetQueries keysetQueries;
     
-    public List<HabitCategory> getAllCategories() {
-        log.info("Fetching all habit categories");
+    public List<HabitCategory> getAllCategories(String ownerId) {
+        return getCategoryList(ownerId).categories();
+    }
+    
+    public CategoryCache.CategoryList getCategoryList(String ownerId) {
+        log.debug("Fetching all habit categories");
         try {
-            List<HabitCategory> categories = categoryRepository.findAll();
-            log.info("Successfully retrieved {} categories", categories.size());
+            CategoryCache.CategoryList categories = categoryCache.getAll(ownerId, () -> categoryRepository.findByOwnerId(ownerId));
+            log.debug("Successfully retrieved {} categories", categories.categories().size());
             return categories;
         } catch (DataAccessException e) {
             log.error("Database error while fetching categories: {}", e.getMessage(), e);
@@ -32,10 +49,10 @@ public class HabitCategoryService {
         }
     }
     
-    public HabitCategory getCategoryById(String id) {
-        log.info("Fetching category with ID: {}", id);
+    public HabitCategory getCategoryById(String ownerId, String id) {
+        log.debug("Fetching category with ID: {}", id);
         try {
-            return categoryRepository.findById(id)
+            return categoryCache.getById(ownerId, id, key -> categoryRepository.findByIdAndOwnerId(key, ownerId))
                     .orElseThrow(() -> {
                         log.warn("Category not found with ID: {}", id);
                         return new ResourceNotFoundException("Category", id);
@@ -46,14 +63,14 @@ public class HabitCategoryService {
         }
     }
     
-    public Optional<HabitCategory> getCategoryByName(String name) {
-        log.info("Fetching category with name: {}", name);
+    public Optional<HabitCategory> getCategoryByName(String ownerId, String name) {
+        log.debug("Fetching category with name: {}", name);
         try {
-            Optional<HabitCategory> category = categoryRepository.findByName(name);
+            Optional<HabitCategory> category = categoryCache.getByName(ownerId, name, key -> categoryRepository.findByOwnerIdAndName(ownerId, key));
             if (category.isPresent()) {
-                log.info("Found category with name: {}", name);
+                log.debug("Found category with name: {}", name);
             } else {
-                log.info("No category found with name: {}", name);
+                log.debug("No category found with name: {}", name);
             }
             return category;
         } catch (DataAccessException e) {
@@ -62,29 +79,59 @@ public class HabitCategoryService {
         }
     }
     
-    public HabitCategory createCategory(HabitCategory category) {
+    public HabitCategory createCategory(String ownerId, HabitCategory category) {
         log.info("Creating new category: {}", category.getName());
         
         try {
-            if (categoryRepository.existsByName(category.getName())) {
-                log.warn("Category already exists with name: {}", category.getName());
-                throw new ResourceAlreadyExistsException("Category", category.getName());
-            }
-            
+            category.setOwnerId(ownerId);
+            // The unique {owner_id, name} index rejects duplicates atomically, even under concurrent creates
             HabitCategory savedCategory = categoryRepository.save(category);
+            categoryCache.invalidate(ownerId);
             log.info("Successfully created category with ID: {}", savedCategory.getId());
             return savedCategory;
+        } catch (DuplicateKeyException e) {
+            log.warn("Category already exists with name: {}", category.getName());
+            throw new ResourceAlreadyExistsException("Category", category.getName());
         } catch (DataAccessException e) {
             log.error("Database error while creating category {}: {}", category.getName(), e.getMessage(), e);
             throw new DatabaseException("Failed to create category", e);
         }
     }
     
-    public HabitCategory updateCategory(String id, HabitCategory categoryDetails) {
+    /**
+     * Bulk-inserts categories from an NDJSON body; names the owner already uses are reported per
+     * record by the unique index rather than checked up front.
+     */
+    public ImportReport importCategories(String ownerId, InputStream body) throws IOException {
+        log.info("Importing categories");
+        return ndjsonImporter.importRecords(body, HabitCategory.class, HabitCategory::getId, category -> {
+            if (category.getId() == null || category.getId().isBlank()) {
+                category.setId(new ObjectId().toHexString());
+            }
+            category.setOwnerId(ownerId);
+            return category;
+        }, categories -> categoryCache.invalidate(ownerId));
+    }
+    
+    /**
+     * Streams categories straight from Mongo for export, bypassing the cache. The caller must
+     * close the stream.
+     */
+    public Stream<HabitCategory> streamCategories(String ownerId) {
+        log.debug("Streaming categories");
+        try {
+            return keysetQueries.stream(Owners.ownedBy(ownerId), HabitCategory.class, null);
+        } catch (DataAccessException e) {
+            log.error("Database error while streaming categories: {}", e.getMessage(), e);
+            throw new DatabaseException("Failed to stream categories", e);
+        }
+    }
+    
+    public HabitCategory updateCategory(String ownerId, String id, HabitCategory categoryDetails) {
         log.info("Updating category with ID: {}", id);
         
         try {
-            HabitCategory existingCategory = categoryRepository.findById(id)
+            HabitCategory existingCategory = categoryRepository.findByIdAndOwnerId(id, ownerId)
                     .orElseThrow(() -> {
                         log.warn("Category not found for update with ID: {}", id);
                         return new ResourceNotFoundException("Category", id);
@@ -92,7 +139,7 @@ public class HabitCategoryService {
             
             // Check if new name conflicts with existing category
             if (!existingCategory.getName().equals(categoryDetails.getName()) && 
-                categoryRepository.existsByName(categoryDetails.getName())) {
+                categoryRepository.existsByOwnerIdAndName(ownerId, categoryDetails.getName())) {
                 log.warn("Category name already exists: {}", categoryDetails.getName());
                 throw new ResourceAlreadyExistsException("Category", categoryDetails.getName());
             }
@@ -102,24 +149,29 @@ public class HabitCategoryService {
             existingCategory.setIcon(categoryDetails.getIcon());
             
             HabitCategory updatedCategory = categoryRepository.save(existingCategory);
+            categoryCache.invalidate(ownerId);
             log.info("Successfully updated category with ID: {}", id);
             return updatedCategory;
+        } catch (DuplicateKeyException e) {
+            log.warn("Category name already exists: {}", categoryDetails.getName());
+            throw new ResourceAlreadyExistsException("Category", categoryDetails.getName());
         } catch (DataAccessException e) {
             log.error("Database error while updating category with ID {}: {}", id, e.getMessage(), e);
             throw new DatabaseException("Failed to update category", e);
         }
     }
     
-    public void deleteCategory(String id) {
+    public void deleteCategory(String ownerId, String id) {
         log.info("Deleting category with ID: {}", id);
         
         try {
-            if (!categoryRepository.existsById(id)) {
+            if (!categoryRepository.existsByIdAndOwnerId(id, ownerId)) {
                 log.warn("Category not found for deletion with ID: {}", id);
                 throw new ResourceNotFoundException("Category", id);
             }
             
             categoryRepository.deleteById(id);
+            categoryCache.invalidate(ownerId);
             log.info("Successfully deleted category with ID: {}", id);
         } catch (DataAccessException e) {
             log.error("Database error while deleting category with ID {}: {}", id, e.getMessage(), e);
@@ -127,10 +179,10 @@ public class HabitCategoryService {
         }
     }
     
-    public boolean existsByName(String name) {
+    public boolean existsByName(String ownerId, String name) {
         log.debug("Checking if category exists with name: {}", name);
         try {
-            boolean exists = categoryRepository.existsByName(name);
+            boolean exists = categoryCache.getByName(ownerId, name, key -> categoryRepository.findByOwnerIdAndName(ownerId, key)).isPresent();
             log.debug("Category exists check for name {}: {}", name, exists);
             return exists;
         } catch (DataAccessException e) {
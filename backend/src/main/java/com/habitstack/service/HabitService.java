@@ -1,28 +1,57 @@
 package com.habitstack.service;
 
+import com.habitstack.dto.CursorPage;
+import com.habitstack.dto.ImportReport;
+import com.habitstack.dto.SearchSuggestion;
 import com.habitstack.exception.DatabaseException;
+import com.habitstack.exception.PreconditionFailedException;
 import com.habitstack.exception.ResourceNotFoundException;
+import com.habitstack.model.CompletionEvent;
 import com.habitstack.model.Habit;
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.Owners;
+import com.habitstack.repository.CompletionEventRepository;
+import com.habitstack.repository.FieldSelection;
 import com.habitstack.repository.HabitRepository;
+import com.habitstack.repository.HabitStackRepository;
+import com.habitstack.repository.KeysetQueries;
+import com.habitstack.repository.SparseFieldQueries;
+import com.habitstack.search.HabitSearchIndex;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
+@Timed(ServiceMetrics.TIMER)
 public class HabitService {
     
     private final HabitRepository habitRepository;
+    private final HabitStackRepository habitStackRepository;
+    private final CompletionEventRepository completionEventRepository;
+    private final KeysetQueries keysetQueries;
+    private final HabitSearchIndex habitSearchIndex;
+    private final SparseFieldQueries sparseFieldQueries;
+    private final NdjsonImporter ndjsonImporter;
     
-    public List<Habit> getAllHabits() {
-        log.info("Fetching all habits");
+    public List<Habit> getAllHabits(String ownerId) {
+        log.debug("Fetching all habits");
         try {
-            List<Habit> habits = habitRepository.findAll();
-            log.info("Successfully retrieved {} habits", habits.size());
+            List<Habit> habits = habitRepository.findByOwnerId(ownerId);
+            log.debug("Successfully retrieved {} habits", habits.size());
             return habits;
         } catch (DataAccessException e) {
             log.error("Database error while fetching habits: {}", e.getMessage(), e);
@@ -30,10 +59,68 @@ public class HabitService {
         }
     }
     
-    public Habit getHabitById(String id) {
-        log.info("Fetching habit with ID: {}", id);
+    public CursorPage<Habit> getHabitsPage(String ownerId, String category, String after, int limit) {
+        log.debug("Fetching habits page after {} with limit {}", after, limit);
         try {
-            return habitRepository.findById(id)
+            CursorPage<Habit> page = keysetQueries.findPage(ownerFilter(ownerId, category), Habit.class, Habit::getId, after, limit);
+            log.debug("Successfully retrieved {} habits", page.getItems().size());
+            return page;
+        } catch (DataAccessException e) {
+            log.error("Database error while fetching habits page: {}", e.getMessage(), e);
+            throw new DatabaseException("Failed to fetch habits", e);
+        }
+    }
+    
+    public Stream<Habit> streamHabits(String ownerId, String category, String after) {
+        log.debug("Streaming habits after {}", after);
+        try {
+            return keysetQueries.stream(ownerFilter(ownerId, category), Habit.class, after);
+        } catch (DataAccessException e) {
+            log.error("Database error while streaming habits: {}", e.getMessage(), e);
+            throw new DatabaseException("Failed to stream habits", e);
+        }
+    }
+    
+    public List<Map<String, Object>> getHabitFields(String ownerId, String category, FieldSelection fields) {
+        log.debug("Fetching habit fields {}", fields.storedFields());
+        try {
+            return sparseFieldQueries.find(fields, ownerFilter(ownerId, category));
+        } catch (DataAccessException e) {
+            log.error("Database error while fetching habit fields: {}", e.getMessage(), e);
+            throw new DatabaseException("Failed to fetch habits", e);
+        }
+    }
+    
+    public CursorPage<Map<String, Object>> getHabitFieldsPage(String ownerId, String category, FieldSelection fields, String after, int limit) {
+        log.debug("Fetching habit fields page after {} with limit {}", after, limit);
+        try {
+            return sparseFieldQueries.findPage(fields, ownerFilter(ownerId, category), after, limit);
+        } catch (DataAccessException e) {
+            log.error("Database error while fetching habit fields page: {}", e.getMessage(), e);
+            throw new DatabaseException("Failed to fetch habits", e);
+        }
+    }
+    
+    public Map<String, Object> getHabitFieldsById(String ownerId, String id, FieldSelection fields) {
+        log.debug("Fetching habit fields with ID: {}", id);
+        try {
+            return sparseFieldQueries.findOne(fields, Owners.ownedBy(ownerId).and("_id").is(id))
+                    .orElseThrow(() -> new ResourceNotFoundException("Habit", id));
+        } catch (DataAccessException e) {
+            log.error("Database error while fetching habit fields with ID {}: {}", id, e.getMessage(), e);
+            throw new DatabaseException("Failed to fetch habit", e);
+        }
+    }
+    
+    private static Criteria ownerFilter(String ownerId, String category) {
+        Criteria filter = Owners.ownedBy(ownerId);
+        return category != null ? filter.and("category").is(category) : filter;
+    }
+    
+    public Habit getHabitById(String ownerId, String id) {
+        log.debug("Fetching habit with ID: {}", id);
+        try {
+            return habitRepository.findByIdAndOwnerId(id, ownerId)
                     .orElseThrow(() -> {
                         log.warn("Habit not found with ID: {}", id);
                         return new ResourceNotFoundException("Habit", id);
@@ -44,11 +131,11 @@ public class HabitService {
         }
     }
     
-    public List<Habit> getHabitsByCategory(String category) {
-        log.info("Fetching habits by category: {}", category);
+    public List<Habit> getHabitsByCategory(String ownerId, String category) {
+        log.debug("Fetching habits by category: {}", category);
         try {
-            List<Habit> habits = habitRepository.findByCategory(category);
-            log.info("Successfully retrieved {} habits for category: {}", habits.size(), category);
+            List<Habit> habits = habitRepository.findByOwnerIdAndCategory(ownerId, category);
+            log.debug("Successfully retrieved {} habits for category: {}", habits.size(), category);
             return habits;
         } catch (DataAccessException e) {
             log.error("Database error while fetching habits by category {}: {}", category, e.getMessage(), e);
@@ -56,11 +143,14 @@ public class HabitService {
         }
     }
     
-    public List<Habit> searchHabits(String query) {
-        log.info("Searching habits with query: {}", query);
+    @Timed(value = ServiceMetrics.HOT_PATH_TIMER, histogram = true)
+    public List<Habit> searchHabits(String ownerId, String query) {
+        log.debug("Searching habits with query: {}", query);
         try {
-            List<Habit> habits = habitRepository.findByNameContainingIgnoreCase(query);
-            log.info("Found {} habits matching query: {}", habits.size(), query);
+            List<Habit> habits = habitSearchIndex.isReady()
+                    ? habitSearchIndex.search(ownerId, query, null, Integer.MAX_VALUE)
+                    : habitRepository.findByOwnerIdAndNameContainingIgnoreCase(ownerId, query);
+            log.debug("Found {} habits matching query: {}", habits.size(), query);
             return habits;
         } catch (DataAccessException e) {
             log.error("Database error while searching habits with query {}: {}", query, e.getMessage(), e);
@@ -68,11 +158,14 @@ public class HabitService {
         }
     }
     
-    public List<Habit> searchHabitsByCategory(String category, String query) {
-        log.info("Searching habits by category: {} with query: {}", category, query);
+    @Timed(value = ServiceMetrics.HOT_PATH_TIMER, histogram = true)
+    public List<Habit> searchHabitsByCategory(String ownerId, String category, String query) {
+        log.debug("Searching habits by category: {} with query: {}", category, query);
         try {
-            List<Habit> habits = habitRepository.findByCategoryAndNameContainingIgnoreCase(category, query);
-            log.info("Found {} habits for category {} matching query: {}", habits.size(), category, query);
+            List<Habit> habits = habitSearchIndex.isReady()
+                    ? habitSearchIndex.search(ownerId, query, category, Integer.MAX_VALUE)
+                    : habitRepository.findByOwnerIdAndCategoryAndNameContainingIgnoreCase(ownerId, category, query);
+            log.debug("Found {} habits for category {} matching query: {}", habits.size(), category, query);
             return habits;
         } catch (DataAccessException e) {
             log.error("Database error while searching habits by category {} with query {}: {}", 
@@ -81,10 +174,38 @@ public class HabitService {
         }
     }
     
-    public Habit createHabit(Habit habit) {
+    @Timed(value = ServiceMetrics.HOT_PATH_TIMER, histogram = true)
+    public List<SearchSuggestion> autocompleteHabits(String ownerId, String prefix, String category, int limit) {
+        log.debug("Autocompleting habits for prefix: {}", prefix);
+        try {
+            List<Habit> habits;
+            if (habitSearchIndex.isReady()) {
+                habits = habitSearchIndex.autocomplete(ownerId, prefix, category, limit);
+            } else {
+                habits = category != null
+                        ? habitRepository.findByOwnerIdAndCategoryAndNameContainingIgnoreCase(ownerId, category, prefix)
+                        : habitRepository.findByOwnerIdAndNameContainingIgnoreCase(ownerId, prefix);
+                habits = habits.subList(0, Math.min(limit, habits.size()));
+            }
+            return habits.stream()
+                    .map(habit -> SearchSuggestion.builder()
+                            .id(habit.getId())
+                            .name(habit.getName())
+                            .category(habit.getCategory())
+                            .build())
+                    .toList();
+        } catch (DataAccessException e) {
+            log.error("Database error while autocompleting habits for prefix {}: {}", prefix, e.getMessage(), e);
+            throw new DatabaseException("Failed to autocomplete habits", e);
+        }
+    }
+    
+    public Habit createHabit(String ownerId, Habit habit) {
         log.info("Creating new habit: {}", habit.getName());
         try {
+            habit.setOwnerId(ownerId);
             Habit savedHabit = habitRepository.save(habit);
+            habitSearchIndex.index(savedHabit);
             log.info("Successfully created habit with ID: {}", savedHabit.getId());
             return savedHabit;
         } catch (DataAccessException e) {
@@ -93,10 +214,39 @@ public class HabitService {
         }
     }
     
-    public Habit updateHabit(String id, Habit habitDetails) {
+    /**
+     * Bulk-inserts habits from an NDJSON body. Records without an id get a fresh ObjectId, the
+     * same key a single create would produce.
+     */
+    public ImportReport importHabits(String ownerId, InputStream body) throws IOException {
+        log.info("Importing habits");
+        return ndjsonImporter.importRecords(body, Habit.class, Habit::getId, habit -> {
+            if (habit.getId() == null || habit.getId().isBlank()) {
+                habit.setId(new ObjectId().toHexString());
+            }
+            habit.setOwnerId(ownerId);
+            habit.setVersion(0L);
+            return habit;
+        }, habits -> habits.forEach(habitSearchIndex::index));
+    }
+    
+    public Optional<Long> getHabitVersion(String ownerId, String id) {
+        try {
+            return sparseFieldQueries.findVersion(Habit.class, Owners.ownedBy(ownerId).and("_id").is(id));
+        } catch (DataAccessException e) {
+            log.error("Database error while fetching version of habit {}: {}", id, e.getMessage(), e);
+            throw new DatabaseException("Failed to fetch habit", e);
+        }
+    }
+    
+    /**
+     * Replaces the editable fields of a habit. With an expected version (from If-Match) the
+     * write only succeeds if the stored document still has that version.
+     */
+    public Habit updateHabit(String ownerId, String id, Habit habitDetails, Long expectedVersion) {
         log.info("Updating habit with ID: {}", id);
         try {
-            Habit existingHabit = habitRepository.findById(id)
+            Habit existingHabit = habitRepository.findByIdAndOwnerId(id, ownerId)
                     .orElseThrow(() -> {
                         log.warn("Habit not found for update with ID: {}", id);
                         return new ResourceNotFoundException("Habit", id);
@@ -106,26 +256,45 @@ public class HabitService {
             existingHabit.setCategory(habitDetails.getCategory());
             existingHabit.setTime(habitDetails.getTime());
             existingHabit.setDescription(habitDetails.getDescription());
+            if (expectedVersion != null) {
+                existingHabit.setVersion(expectedVersion);
+            }
             
             Habit updatedHabit = habitRepository.save(existingHabit);
+            habitSearchIndex.index(updatedHabit);
             log.info("Successfully updated habit with ID: {}", id);
             return updatedHabit;
+        } catch (OptimisticLockingFailureException e) {
+            if (expectedVersion != null) {
+                throw new PreconditionFailedException("Habit", id);
+            }
+            throw e;
         } catch (DataAccessException e) {
             log.error("Database error while updating habit with ID {}: {}", id, e.getMessage(), e);
             throw new DatabaseException("Failed to update habit", e);
         }
     }
     
-    public boolean deleteHabit(String id) {
+    public boolean deleteHabit(String ownerId, String id) {
         log.info("Deleting habit with ID: {}", id);
         try {
-            if (!habitRepository.existsById(id)) {
+            // The owner-scoped delete doubles as the existence check
+            if (habitRepository.deleteByIdAndOwnerId(id, ownerId) == 0) {
                 log.warn("Habit not found for deletion with ID: {}", id);
                 return false; // Return false instead of throwing exception
             }
             
-            habitRepository.deleteById(id);
-            log.info("Successfully deleted habit with ID: {}", id);
+            habitSearchIndex.remove(ownerId, id);
+            List<HabitStack> stacks = habitStackRepository.removeHabit(ownerId, id);
+            // The stacks' completion changed, so their progress is brought up to date as after a batch
+            List<CompletionEvent> events = stacks.stream()
+                    .filter(stack -> !stack.getHabits().isEmpty())
+                    .map(stack -> CompletionEvent.of(stack, null))
+                    .toList();
+            if (!events.isEmpty()) {
+                completionEventRepository.insert(events);
+            }
+            log.info("Successfully deleted habit with ID: {} and removed it from {} stacks", id, stacks.size());
             return true;
         } catch (DataAccessException e) {
             log.error("Database error while deleting habit with ID {}: {}", id, e.getMessage(), e);
@@ -133,10 +302,10 @@ public class HabitService {
         }
     }
     
-    public boolean existsByName(String name) {
+    public boolean existsByName(String ownerId, String name) {
         log.debug("Checking if habit exists with name: {}", name);
         try {
-            boolean exists = habitRepository.existsByName(name);
+            boolean exists = habitRepository.existsByOwnerIdAndName(ownerId, name);
             log.debug("Habit exists check for name {}: {}", name, exists);
             return exists;
         } catch (DataAccessException e) {
@@ -1,114 +1,319 @@
 package com.habitstack.service;
 
+import com.habitstack.dto.CursorPage;
+import com.habitstack.dto.ImportReport;
+import com.habitstack.dto.SearchSuggestion;
+import com.habitstack.dto.StackBatchResponse;
+import com.habitstack.dto.StackOperation;
+import com.habitstack.dto.StackSummary;
+import com.habitstack.exception.PreconditionFailedException;
+import com.habitstack.exception.ValidationException;
+import com.habitstack.model.CompletionEvent;
+import com.habitstack.model.Habit;
 import com.habitstack.model.HabitStack;
-import com.habitstack.model.StackHabit;
+import com.habitstack.model.Owners;
 import com.habitstack.model.ProgressData;
+import com.habitstack.repository.CompletionEventRepository;
+import com.habitstack.repository.FieldSelection;
+import com.habitstack.repository.HabitRepository;
 import com.habitstack.repository.HabitStackRepository;
+import com.habitstack.repository.KeysetQueries;
+import com.habitstack.repository.SparseFieldQueries;
+import com.habitstack.search.StackSearchIndex;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.annotation.Timed;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.BulkOperationException;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Service
+@Timed(ServiceMetrics.TIMER)
 public class HabitStackService {
     
+    private static final int MAX_BATCH_OPERATIONS = 1000;
+    
     @Autowired
     private HabitStackRepository habitStackRepository;
     
     @Autowired
     private ProgressDataService progressDataService;
     
-    public List<HabitStack> getAllStacks() {
-        return habitStackRepository.findAll();
+    @Autowired
+    private KeysetQueries keysetQueries;
+    
+    @Autowired
+    private StackSearchIndex stackSearchIndex;
+    
+    @Autowired
+    private HabitRepository habitRepository;
+    
+    @Autowired
+    private CompletionEventRepository completionEventRepository;
+    
+    @Autowired
+    private ProgressWriteBuffer progressWriteBuffer;
+    
+    @Autowired
+    private SparseFieldQueries sparseFieldQueries;
+    
+    @Autowired
+    private NdjsonImporter ndjsonImporter;
+    
+    public List<HabitStack> getAllStacks(String ownerId) {
+        return habitStackRepository.findByOwnerId(ownerId);
+    }
+    
+    public CursorPage<HabitStack> getStacksPage(String ownerId, String after, int limit) {
+        return keysetQueries.findPage(Owners.ownedBy(ownerId), HabitStack.class, HabitStack::getId, after, limit);
+    }
+    
+    public Stream<HabitStack> streamStacks(String ownerId, String after) {
+        return keysetQueries.stream(Owners.ownedBy(ownerId), HabitStack.class, after);
+    }
+    
+    public List<StackSummary> getStackSummaries(String ownerId) {
+        return habitStackRepository.findSummaries(ownerId, null, null);
+    }
+    
+    public CursorPage<StackSummary> getStackSummariesPage(String ownerId, String after, int limit) {
+        KeysetQueries.checkLimit(limit);
+        return KeysetQueries.toPage(habitStackRepository.findSummaries(ownerId, after, limit + 1), StackSummary::getId, limit);
+    }
+    
+    public List<Map<String, Object>> getStackFields(String ownerId, FieldSelection fields) {
+        return sparseFieldQueries.find(fields, Owners.ownedBy(ownerId));
+    }
+    
+    public CursorPage<Map<String, Object>> getStackFieldsPage(String ownerId, FieldSelection fields, String after, int limit) {
+        return sparseFieldQueries.findPage(fields, Owners.ownedBy(ownerId), after, limit);
+    }
+    
+    public Optional<Map<String, Object>> getStackFieldsById(String ownerId, String id, FieldSelection fields) {
+        return sparseFieldQueries.findOne(fields, Owners.ownedBy(ownerId).and("_id").is(id));
+    }
+    
+    public Optional<HabitStack> getStackById(String ownerId, String id) {
+        return habitStackRepository.findByIdAndOwnerId(id, ownerId);
+    }
+    
+    @Timed(value = ServiceMetrics.HOT_PATH_TIMER, histogram = true)
+    public List<HabitStack> searchStacks(String ownerId, String query) {
+        if (!stackSearchIndex.isReady()) {
+            return habitStackRepository.findByOwnerIdAndNameContainingIgnoreCase(ownerId, query);
+        }
+        
+        // The index ranks the ids; one _id lookup loads the current documents
+        List<String> ids = stackSearchIndex.search(ownerId, query, Integer.MAX_VALUE);
+        Map<String, HabitStack> stacksById = new HashMap<>();
+        habitStackRepository.findByOwnerIdAndIdIn(ownerId, ids).forEach(stack -> stacksById.put(stack.getId(), stack));
+        return ids.stream()
+                .map(stacksById::get)
+                .filter(Objects::nonNull)
+                .toList();
     }
     
-    public Optional<HabitStack> getStackById(String id) {
-        return habitStackRepository.findById(id);
+    @Timed(value = ServiceMetrics.HOT_PATH_TIMER, histogram = true)
+    public List<SearchSuggestion> autocompleteStacks(String ownerId, String prefix, int limit) {
+        if (!stackSearchIndex.isReady()) {
+            return habitStackRepository.findByOwnerIdAndNameContainingIgnoreCase(ownerId, prefix).stream()
+                    .limit(limit)
+                    .map(stack -> SearchSuggestion.builder().id(stack.getId()).name(stack.getName()).build())
+                    .toList();
+        }
+        return stackSearchIndex.autocomplete(ownerId, prefix, limit).entrySet().stream()
+                .map(entry -> SearchSuggestion.builder().id(entry.getKey()).name(entry.getValue()).build())
+                .toList();
     }
     
-    public List<HabitStack> searchStacks(String query) {
-        return habitStackRepository.findByNameContainingIgnoreCase(query);
+    /**
+     * Inlines the referenced Habit documents into each StackHabit. Ids are deduplicated across
+     * all stacks and resolved with a single $in query, limited to the owner's own habits.
+     */
+    public <C extends Collection<HabitStack>> C expandHabits(String ownerId, C stacks) {
+        Set<String> habitIds = new HashSet<>();
+        stacks.forEach(stack -> stack.getHabits().forEach(stackHabit -> habitIds.add(stackHabit.getHabitId())));
+        if (habitIds.isEmpty()) {
+            return stacks;
+        }
+        
+        Map<String, Habit> habitsById = new HashMap<>();
+        habitRepository.findByOwnerIdAndIdIn(ownerId, habitIds).forEach(habit -> habitsById.put(habit.getId(), habit));
+        stacks.forEach(stack -> stack.getHabits()
+                .forEach(stackHabit -> stackHabit.setHabit(habitsById.get(stackHabit.getHabitId()))));
+        return stacks;
     }
     
-    public HabitStack createStack(HabitStack stack) {
-        HabitStack savedStack = habitStackRepository.save(stack);
+    public HabitStack createStack(String ownerId, HabitStack stack) {
+        stack.setOwnerId(ownerId);
+        startRolloverCycle(stack);
+        HabitStack savedStack = habitStackRepository.save(stack.refreshCounts());
+        stackSearchIndex.index(savedStack);
         
         // Create initial progress data
-        ProgressData progressData = new ProgressData(savedStack.getId());
-        progressDataService.createOrUpdateProgress(progressData);
+        ProgressData progressData = new ProgressData(ownerId, savedStack.getId());
+        progressDataService.createOrUpdateProgress(ownerId, progressData);
         
         return savedStack;
     }
     
-    public HabitStack updateStack(String id, HabitStack stackDetails) {
-        Optional<HabitStack> optionalStack = habitStackRepository.findById(id);
+    /**
+     * Bulk-inserts stacks from an NDJSON body, then creates their initial progress one batch at
+     * a time, as createStack does for a single stack.
+     */
+    public ImportReport importStacks(String ownerId, InputStream body) throws IOException {
+        return ndjsonImporter.importRecords(body, HabitStack.class, HabitStack::getId, stack -> {
+            if (stack.getId() == null || stack.getId().isBlank()) {
+                stack.setId(new ObjectId().toHexString());
+            }
+            stack.setOwnerId(ownerId);
+            stack.setVersion(0L);
+            startRolloverCycle(stack);
+            return stack.refreshCounts();
+        }, stacks -> {
+            stacks.forEach(stackSearchIndex::index);
+            progressDataService.createInitialProgress(ownerId, stacks.stream().map(HabitStack::getId).toList());
+        });
+    }
+    
+    public Optional<Long> getStackVersion(String ownerId, String id) {
+        return sparseFieldQueries.findVersion(HabitStack.class, Owners.ownedBy(ownerId).and("_id").is(id));
+    }
+    
+    /**
+     * Replaces name, habits and lastCompleted, and the timezone when one is given. The save is
+     * conditional on the version that was loaded, or on {@code expectedVersion} when the client
+     * sent If-Match, so concurrent edits fail instead of silently overwriting each other.
+     */
+    public HabitStack updateStack(String ownerId, String id, HabitStack stackDetails, Long expectedVersion) {
+        Optional<HabitStack> optionalStack = habitStackRepository.findByIdAndOwnerId(id, ownerId);
         if (optionalStack.isPresent()) {
             HabitStack stack = optionalStack.get();
             stack.setName(stackDetails.getName());
             stack.setHabits(stackDetails.getHabits());
             stack.setLastCompleted(stackDetails.getLastCompleted());
-            return habitStackRepository.save(stack);
+            if (stackDetails.getTimezone() != null) {
+                checkTimezone(stackDetails.getTimezone());
+                stack.setTimezone(stackDetails.getTimezone());
+            }
+            if (expectedVersion != null) {
+                stack.setVersion(expectedVersion);
+            }
+            HabitStack updatedStack;
+            try {
+                updatedStack = habitStackRepository.save(stack.refreshCounts());
+            } catch (OptimisticLockingFailureException e) {
+                if (expectedVersion != null) {
+                    throw new PreconditionFailedException("HabitStack", id);
+                }
+                throw e;
+            }
+            stackSearchIndex.index(updatedStack);
+            return updatedStack;
         }
         return null;
     }
     
-    public boolean deleteStack(String id) {
-        if (habitStackRepository.existsById(id)) {
-            habitStackRepository.deleteById(id);
-            progressDataService.deleteProgressByStackId(id);
-            return true;
+    public boolean deleteStack(String ownerId, String id) {
+        if (!habitStackRepository.deleteWithProgress(ownerId, id)) {
+            return false;
         }
-        return false;
+        // Unprocessed completion events of the stack are skipped by CompletionEventProcessor
+        progressWriteBuffer.discard(id);
+        stackSearchIndex.remove(ownerId, id);
+        return true;
     }
     
-    public HabitStack toggleHabitCompletion(String stackId, String habitId) {
-        Optional<HabitStack> optionalStack = habitStackRepository.findById(stackId);
-        if (optionalStack.isPresent()) {
-            HabitStack stack = optionalStack.get();
-            
-            // Find and toggle the habit
-            for (StackHabit stackHabit : stack.getHabits()) {
-                if (stackHabit.getHabitId().equals(habitId)) {
-                    stackHabit.setCompleted(!stackHabit.isCompleted());
-                    break;
-                }
-            }
-            
-            // Update last completed if all habits are completed
-            if (stack.isCompleted()) {
-                stack.setLastCompleted(LocalDateTime.now());
-            }
-            
-            HabitStack updatedStack = habitStackRepository.save(stack);
-            
-            // Update progress data
-            updateProgressData(updatedStack);
-            
-            return updatedStack;
+    @Timed(value = ServiceMetrics.HOT_PATH_TIMER, histogram = true)
+    public HabitStack toggleHabitCompletion(String ownerId, String stackId, String habitId) {
+        HabitStack updatedStack = habitStackRepository.toggleHabitCompletion(ownerId, stackId, habitId);
+        if (updatedStack != null) {
+            // Progress is derived from the event log by CompletionEventProcessor
+            completionEventRepository.insert(CompletionEvent.of(updatedStack, habitId));
         }
-        return null;
+        return updatedStack;
     }
     
-    private void updateProgressData(HabitStack stack) {
-        ProgressData progressData = progressDataService.getProgressByStackId(stack.getId())
-                .orElse(new ProgressData(stack.getId()));
-        
-        double completionRate = stack.getCompletionPercentage() / 100.0;
-        progressData.setCompletionRate(completionRate);
+    public StackBatchResponse applyBatch(String ownerId, List<StackOperation> operations) {
+        if (operations.size() > MAX_BATCH_OPERATIONS) {
+            throw new ValidationException("operations", "at most " + MAX_BATCH_OPERATIONS + " operations per batch");
+        }
+        for (StackOperation operation : operations) {
+            if (operation.getType() == StackOperation.Type.SET_COMPLETED && operation.getCompleted() == null) {
+                throw new ValidationException("completed", "required for set_completed operations");
+            }
+        }
         
-        // Update streak if stack is completed
-        if (stack.isCompleted()) {
-            progressData.setCurrentStreak(progressData.getCurrentStreak() + 1);
-            progressData.setLongestStreak(Math.max(progressData.getLongestStreak(), progressData.getCurrentStreak()));
+        BulkWriteResult result;
+        try {
+            result = habitStackRepository.applyOperations(ownerId, operations);
+        } catch (BulkOperationException e) {
+            // The bulk is ordered, so everything before the first failed operation is stored and
+            // its stacks' progress must still follow
+            int applied = e.getErrors().stream().mapToInt(BulkWriteError::getIndex).min().orElse(0);
+            recordCompletion(ownerId, operations.subList(0, applied));
+            throw e;
         }
+        List<HabitStack> stacks = recordCompletion(ownerId, operations);
         
-        progressData.setUpdatedAt(LocalDateTime.now());
-        progressDataService.createOrUpdateProgress(progressData);
+        return StackBatchResponse.builder()
+                .operations(operations.size())
+                .matched(result.getMatchedCount())
+                .modified(result.getModifiedCount())
+                .stacks(stacks)
+                .build();
+    }
+    
+    // One completion event per affected stack, not one per operation; returns the stacks as stored
+    private List<HabitStack> recordCompletion(String ownerId, List<StackOperation> operations) {
+        Set<String> stackIds = new LinkedHashSet<>();
+        operations.forEach(operation -> stackIds.add(operation.getStackId()));
+        if (stackIds.isEmpty()) {
+            return List.of();
+        }
+        List<HabitStack> stacks = habitStackRepository.findByOwnerIdAndIdIn(ownerId, stackIds);
+        completionEventRepository.insert(stacks.stream()
+                .map(stack -> CompletionEvent.of(stack, null))
+                .toList());
+        return stacks;
+    }
+    
+    // A new stack's habits count for today; DailyRollover resets them after the next local midnight
+    private static void startRolloverCycle(HabitStack stack) {
+        checkTimezone(stack.getTimezone());
+        stack.setRolloverDate(LocalDate.now(stack.zoneId()));
+    }
+    
+    private static void checkTimezone(String timezone) {
+        if (timezone == null) {
+            return;
+        }
+        try {
+            ZoneId.of(timezone);
+        } catch (DateTimeException e) {
+            throw new ValidationException("timezone", "must be an IANA time zone such as Europe/Berlin");
+        }
     }
     
-    public boolean existsByName(String name) {
-        return habitStackRepository.existsByName(name);
+    public boolean existsByName(String ownerId, String name) {
+        return habitStackRepository.existsByOwnerIdAndName(ownerId, name);
     }
 }
\ No newline at end of file
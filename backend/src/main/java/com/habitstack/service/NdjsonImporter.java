@@ -0,0 +1,237 @@
+package com.habitstack.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.habitstack.dto.ImportError;
+import com.habitstack.dto.ImportReport;
+import com.habitstack.exception.DatabaseException;
+import com.habitstack.exception.ValidationException;
+import com.habitstack.repository.BulkInserts;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Reads an NDJSON body one line at a time, validates each record with its Jakarta constraints
+ * and writes valid ones in unordered batches of {@code habitstack.import.batch-size}. Only the
+ * current batch and the first {@code max-errors} errors are held, so memory does not grow with
+ * the size of the upload. Lines longer than {@code max-line-length} characters are rejected
+ * without being held either, so a body without newlines cannot exhaust the heap.
+ */
+@Slf4j
+@Component
+public class NdjsonImporter {
+    
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final BulkInserts bulkInserts;
+    private final int batchSize;
+    private final int maxErrors;
+    private final int maxLineLength;
+    
+    public NdjsonImporter(ObjectMapper objectMapper,
+                          Validator validator,
+                          BulkInserts bulkInserts,
+                          @Value("${habitstack.import.batch-size:500}") int batchSize,
+                          @Value("${habitstack.import.max-errors:100}") int maxErrors,
+                          @Value("${habitstack.import.max-line-length:1048576}") int maxLineLength) {
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.bulkInserts = bulkInserts;
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+        this.maxLineLength = maxLineLength;
+    }
+    
+    /**
+     * @param idOf       reads the client-supplied id for error reports, before {@code prepare} runs
+     * @param prepare    fills in server-side fields (id, version, counters) on a valid record;
+     *                   it may reject the record by throwing ValidationException
+     * @param onInserted called once per batch with the records the server accepted
+     */
+    public <T> ImportReport importRecords(InputStream body, Class<T> type, Function<T, String> idOf,
+                                          UnaryOperator<T> prepare, Consumer<List<T>> onInserted) throws IOException {
+        ObjectReader reader = objectMapper.readerFor(type);
+        Report report = new Report();
+        Batch<T> batch = new Batch<>();
+        
+        BoundedLines lines = new BoundedLines(new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)),
+                maxLineLength);
+        long lineNumber = 0;
+        String line;
+        while ((line = lines.next()) != null) {
+            lineNumber++;
+            if (lines.oversized()) {
+                report.received++;
+                report.reject(lineNumber, null, "Line longer than " + maxLineLength + " characters");
+                continue;
+            }
+            if (line.isBlank()) {
+                continue;
+            }
+            report.received++;
+            
+            T record;
+            try {
+                record = reader.readValue(line);
+            } catch (JsonProcessingException e) {
+                report.reject(lineNumber, null, "Malformed JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            
+            String id = idOf.apply(record);
+            Set<ConstraintViolation<T>> violations = validator.validate(record);
+            if (!violations.isEmpty()) {
+                report.reject(lineNumber, id, violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+                continue;
+            }
+            
+            T prepared;
+            try {
+                prepared = prepare.apply(record);
+            } catch (ValidationException e) {
+                report.reject(lineNumber, id, e.getMessage());
+                continue;
+            }
+            batch.add(prepared, lineNumber, id);
+            if (batch.records.size() >= batchSize) {
+                flush(type, batch, report, onInserted);
+            }
+        }
+        flush(type, batch, report, onInserted);
+        
+        log.info("Imported {} of {} {} records, {} failed", report.inserted, report.received,
+                type.getSimpleName(), report.failed);
+        return ImportReport.builder()
+                .received(report.received)
+                .inserted(report.inserted)
+                .failed(report.failed)
+                .errors(report.errors)
+                .errorsTruncated(report.failed > report.errors.size())
+                .build();
+    }
+    
+    private <T> void flush(Class<T> type, Batch<T> batch, Report report, Consumer<List<T>> onInserted) {
+        if (batch.records.isEmpty()) {
+            return;
+        }
+        Map<Integer, String> rejected;
+        try {
+            rejected = bulkInserts.insertUnordered(type, batch.records);
+        } catch (DataAccessException e) {
+            log.error("Database error while importing {} records: {}", type.getSimpleName(), e.getMessage(), e);
+            throw new DatabaseException("Failed to import records", e);
+        }
+        
+        List<T> inserted = new ArrayList<>(batch.records.size() - rejected.size());
+        for (int i = 0; i < batch.records.size(); i++) {
+            String message = rejected.get(i);
+            if (message != null) {
+                report.reject(batch.lines.get(i), batch.ids.get(i), message);
+            } else {
+                inserted.add(batch.records.get(i));
+            }
+        }
+        report.inserted += inserted.size();
+        if (!inserted.isEmpty()) {
+            onInserted.accept(inserted);
+        }
+        batch.clear();
+    }
+    
+    /**
+     * Splits a body into lines like BufferedReader.readLine, but holds at most {@code maxLength}
+     * characters of a line; the rest of a longer one is read and discarded.
+     */
+    private static final class BoundedLines {
+        private final Reader reader;
+        private final int maxLength;
+        private final StringBuilder line = new StringBuilder();
+        private boolean oversized;
+        
+        BoundedLines(Reader reader, int maxLength) {
+            this.reader = reader;
+            this.maxLength = maxLength;
+        }
+        
+        /** The next line, truncated when {@link #oversized()}, or null at the end of the body. */
+        String next() throws IOException {
+            line.setLength(0);
+            oversized = false;
+            int c;
+            while ((c = reader.read()) != -1 && c != '\n') {
+                // A raw CR can only be whitespace in JSON, so dropping it also handles CRLF endings
+                if (c == '\r') {
+                    continue;
+                }
+                if (line.length() < maxLength) {
+                    line.append((char) c);
+                } else {
+                    oversized = true;
+                }
+            }
+            if (c == -1 && line.isEmpty() && !oversized) {
+                return null;
+            }
+            return line.toString();
+        }
+        
+        boolean oversized() {
+            return oversized;
+        }
+    }
+    
+    private static final class Batch<T> {
+        private final List<T> records = new ArrayList<>();
+        private final List<Long> lines = new ArrayList<>();
+        private final List<String> ids = new ArrayList<>();
+        
+        void add(T record, long line, String id) {
+            records.add(record);
+            lines.add(line);
+            ids.add(id);
+        }
+        
+        void clear() {
+            records.clear();
+            lines.clear();
+            ids.clear();
+        }
+    }
+    
+    private final class Report {
+        private long received;
+        private long inserted;
+        private long failed;
+        private final List<ImportError> errors = new ArrayList<>();
+        
+        void reject(long line, String id, String message) {
+            failed++;
+            if (errors.size() < maxErrors) {
+                errors.add(ImportError.builder().line(line).id(id).message(message).build());
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.habitstack.service;
+
+import com.habitstack.model.ProcessorCheckpoint;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Time-limited leases on processor checkpoint documents, so that a background job runs on one
+ * instance at a time and is picked up by another when its holder dies.
+ */
+@Component
+@RequiredArgsConstructor
+class ProcessorLeases {
+    
+    private final MongoTemplate mongoTemplate;
+    private final String instanceId = UUID.randomUUID().toString();
+    
+    /**
+     * Takes or renews the lease on the named checkpoint; false while another instance holds it.
+     */
+    boolean acquire(String checkpointId, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(Criteria.where("_id").is(checkpointId).orOperator(
+                Criteria.where("lease_until").is(null),
+                Criteria.where("lease_until").lt(now),
+                Criteria.where("lease_owner").is(instanceId)));
+        Update update = new Update()
+                .set("lease_owner", instanceId)
+                .set("lease_until", now.plus(lease));
+        try {
+            mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().upsert(true), ProcessorCheckpoint.class);
+            return true;
+        } catch (DuplicateKeyException e) {
+            // Checkpoint exists and another instance holds the lease
+            return false;
+        }
+    }
+}
@@ -1,72 +1,187 @@
 package com.habitstack.service;
 
+import com.habitstack.dto.CursorPage;
+import com.habitstack.exception.PreconditionFailedException;
+import com.habitstack.exception.ResourceAlreadyExistsException;
+import com.habitstack.exception.ResourceNotFoundException;
+import com.habitstack.model.Owners;
 import com.habitstack.model.ProgressData;
+import com.habitstack.repository.BulkInserts;
+import com.habitstack.repository.FieldSelection;
+import com.habitstack.repository.HabitStackRepository;
+import com.habitstack.repository.KeysetQueries;
 import com.habitstack.repository.ProgressDataRepository;
+import com.habitstack.repository.SparseFieldQueries;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
 
 @Service
+@Timed(ServiceMetrics.TIMER)
 public class ProgressDataService {
     
     @Autowired
     private ProgressDataRepository progressRepository;
     
-    public List<ProgressData> getAllProgress() {
-        return progressRepository.findAll();
+    @Autowired
+    private KeysetQueries keysetQueries;
+    
+    @Autowired
+    private SparseFieldQueries sparseFieldQueries;
+    
+    @Autowired
+    private BulkInserts bulkInserts;
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private HabitStackRepository habitStackRepository;
+    
+    public List<ProgressData> getAllProgress(String ownerId) {
+        return progressRepository.findByOwnerId(ownerId);
     }
     
-    public Optional<ProgressData> getProgressById(String id) {
-        return progressRepository.findById(id);
+    public CursorPage<ProgressData> getProgressPage(String ownerId, String after, int limit) {
+        return keysetQueries.findPage(Owners.ownedBy(ownerId), ProgressData.class, ProgressData::getId, after, limit);
     }
     
-    public Optional<ProgressData> getProgressByStackId(String stackId) {
-        return progressRepository.findByStackId(stackId);
+    public Stream<ProgressData> streamProgress(String ownerId, String after) {
+        return keysetQueries.stream(Owners.ownedBy(ownerId), ProgressData.class, after);
     }
     
-    public ProgressData createOrUpdateProgress(ProgressData progressData) {
-        Optional<ProgressData> existingProgress = progressRepository.findByStackId(progressData.getStackId());
-        
-        if (existingProgress.isPresent()) {
-            ProgressData existing = existingProgress.get();
-            existing.setCurrentStreak(progressData.getCurrentStreak());
-            existing.setLongestStreak(progressData.getLongestStreak());
-            existing.setCompletionRate(progressData.getCompletionRate());
-            existing.setLastWeekProgress(progressData.getLastWeekProgress());
-            existing.setUpdatedAt(LocalDateTime.now());
-            return progressRepository.save(existing);
-        } else {
-            progressData.setUpdatedAt(LocalDateTime.now());
-            return progressRepository.save(progressData);
-        }
+    public List<Map<String, Object>> getProgressFields(String ownerId, FieldSelection fields) {
+        return sparseFieldQueries.find(fields, Owners.ownedBy(ownerId));
     }
     
-    public ProgressData updateProgress(String stackId, ProgressData progressDetails) {
-        Optional<ProgressData> optionalProgress = progressRepository.findByStackId(stackId);
-        if (optionalProgress.isPresent()) {
-            ProgressData progress = optionalProgress.get();
-            progress.setCurrentStreak(progressDetails.getCurrentStreak());
-            progress.setLongestStreak(progressDetails.getLongestStreak());
-            progress.setCompletionRate(progressDetails.getCompletionRate());
-            progress.setLastWeekProgress(progressDetails.getLastWeekProgress());
-            progress.setUpdatedAt(LocalDateTime.now());
-            return progressRepository.save(progress);
+    public CursorPage<Map<String, Object>> getProgressFieldsPage(String ownerId, FieldSelection fields, String after, int limit) {
+        return sparseFieldQueries.findPage(fields, Owners.ownedBy(ownerId), after, limit);
+    }
+    
+    public Optional<Map<String, Object>> getProgressFieldsByStackId(String ownerId, String stackId, FieldSelection fields) {
+        return sparseFieldQueries.findOne(fields, Owners.ownedBy(ownerId).and("stack_id").is(stackId));
+    }
+    
+    public Optional<ProgressData> getProgressById(String ownerId, String id) {
+        return progressRepository.findByIdAndOwnerId(id, ownerId);
+    }
+    
+    public Optional<ProgressData> getProgressByStackId(String ownerId, String stackId) {
+        return progressRepository.findByOwnerIdAndStackId(ownerId, stackId);
+    }
+    
+    /**
+     * The owner's progress for a stack, or an unsaved default when none is stored. Never writes,
+     * so reads stay safe to repeat and to cache.
+     */
+    public ProgressData getProgressOrDefault(String ownerId, String stackId) {
+        return progressRepository.findByOwnerIdAndStackId(ownerId, stackId)
+                .orElseGet(() -> ProgressData.unsaved(ownerId, stackId));
+    }
+    
+    /**
+     * Stores the statistics of {@code progressData} as the owner's progress for its stack in a
+     * single upsert. Racing calls cannot insert duplicates: the unique stack_id index lets only
+     * one insert through and the other is retried as an update.
+     */
+    public ProgressData createOrUpdateProgress(String ownerId, ProgressData progressData) {
+        return upsert(ownerId, progressData.getStackId(), statisticsUpdate(progressData));
+    }
+    
+    /**
+     * Inserts default progress for newly imported stacks in one round trip. Stacks that already
+     * have progress are left alone; the unique stack_id index rejects their duplicates.
+     */
+    public void createInitialProgress(String ownerId, List<String> stackIds) {
+        bulkInserts.insertUnordered(ProgressData.class, stackIds.stream()
+                .map(stackId -> {
+                    ProgressData progress = new ProgressData(ownerId, stackId);
+                    progress.setVersion(0L);
+                    return progress;
+                })
+                .toList());
+    }
+    
+    public Optional<Long> getProgressVersion(String ownerId, String stackId) {
+        return sparseFieldQueries.findVersion(ProgressData.class, Owners.ownedBy(ownerId).and("stack_id").is(stackId));
+    }
+    
+    /**
+     * Replaces the statistics of the owner's progress for a stack. Reads hand out an unsaved
+     * default, so without an expected version a missing document is created; with one (from
+     * If-Match) only that stored version is updated. Stacks the owner does not have are a 404,
+     * which keeps progress from being created for them.
+     */
+    public ProgressData updateProgress(String ownerId, String stackId, ProgressData progressDetails, Long expectedVersion) {
+        if (!habitStackRepository.existsByIdAndOwnerId(stackId, ownerId)) {
+            throw new ResourceNotFoundException("HabitStack", stackId);
         }
-        return null;
+        
+        Update update = statisticsUpdate(progressDetails);
+        if (expectedVersion == null) {
+            return upsert(ownerId, stackId, update);
+        }
+        
+        ProgressData updated = mongoTemplate.findAndModify(
+                Query.query(ownerStack(ownerId, stackId).and("version").is(expectedVersion)),
+                update, FindAndModifyOptions.options().returnNew(true), ProgressData.class);
+        if (updated == null) {
+            throw new PreconditionFailedException("ProgressData", stackId);
+        }
+        return updated;
     }
     
-    public boolean deleteProgress(String id) {
-        if (progressRepository.existsById(id)) {
+    public boolean deleteProgress(String ownerId, String id) {
+        if (progressRepository.existsByIdAndOwnerId(id, ownerId)) {
             progressRepository.deleteById(id);
             return true;
         }
         return false;
     }
     
-    public void deleteProgressByStackId(String stackId) {
-        progressRepository.deleteByStackId(stackId);
+    private ProgressData upsert(String ownerId, String stackId, Update update) {
+        Query query = Query.query(ownerStack(ownerId, stackId));
+        update.setOnInsert("_id", UUID.randomUUID().toString())
+                .setOnInsert("completion_days", List.of());
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+        try {
+            return mongoTemplate.findAndModify(query, update, options, ProgressData.class);
+        } catch (DuplicateKeyException e) {
+            // Either a concurrent upsert inserted first, and the retry updates its document, or
+            // progress stored under this stack_id by another owner, from before stacks were
+            // checked, is in the way
+            try {
+                return mongoTemplate.findAndModify(query, update, options, ProgressData.class);
+            } catch (DuplicateKeyException again) {
+                throw new ResourceAlreadyExistsException("ProgressData", stackId);
+            }
+        }
+    }
+    
+    private static Criteria ownerStack(String ownerId, String stackId) {
+        return Owners.ownedBy(ownerId).and("stack_id").is(stackId);
+    }
+    
+    private static Update statisticsUpdate(ProgressData progress) {
+        return new Update()
+                .set("current_streak", progress.getCurrentStreak())
+                .set("longest_streak", progress.getLongestStreak())
+                .set("completion_rate", progress.getCompletionRate())
+                .set("last_week_progress", progress.getLastWeekProgress())
+                .set("updated_at", LocalDateTime.now())
+                .inc("version", 1L);
     }
 }
\ No newline at end of file
@@ -0,0 +1,109 @@
+package com.habitstack.service;
+
+import com.habitstack.model.CompletionEvent;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * What a run of completion events changes about one stack's progress: the latest completion
+ * rate and the days the stack was fully completed. It is applied as an update pipeline on top of
+ * whatever is stored at write time, so rollovers and PUTs that land while the delta waits in
+ * ProgressWriteBuffer are built upon instead of overwritten.
+ * <p>
+ * A day counts towards the streak when the stack was fully completed at least once that day, in
+ * the stack's timezone, so toggling a habit off and on again cannot inflate it. Applying a day
+ * that is already stored changes nothing, which is what makes reprocessing an event harmless.
+ */
+final class ProgressDelta {
+    
+    private static final int WEEK = 7;
+    
+    private final String ownerId;
+    private final TreeSet<LocalDate> completedDays = new TreeSet<>();
+    private Double completionRate;
+    private ZoneId zone;
+    
+    ProgressDelta(String ownerId) {
+        this.ownerId = ownerId;
+    }
+    
+    String ownerId() {
+        return ownerId;
+    }
+    
+    void apply(CompletionEvent event) {
+        if (event.getTotalCount() > 0) {
+            completionRate = (double) event.getCompletedCount() / event.getTotalCount();
+        }
+        if (event.isStackCompleted()) {
+            completedDays.add(event.localDay());
+        }
+        zone = event.zoneId();
+    }
+    
+    /**
+     * The pipeline folding this delta into a progress document; fields that are missing, as on
+     * a document just inserted by the upsert, start from the defaults of a new ProgressData.
+     */
+    AggregationUpdate toUpdate(MongoConverter converter) {
+        // Taken at write time, so a delta folded before midnight and written after it uses the new day
+        LocalDate today = LocalDate.now(zone);
+        
+        // Days are added oldest first; each one extends the streak when the day before is stored
+        List<Document> days = new ArrayList<>(completedDays.size());
+        completedDays.forEach(day -> days.add(new Document("day", toMongo(converter, day))
+                .append("prev", toMongo(converter, day.minusDays(1)))));
+        Document streak = new Document("$cond", List.of(
+                new Document("$in", List.of("$$this.prev", "$$value.days")),
+                new Document("$add", List.of("$$value.current", 1)),
+                1));
+        Document added = new Document("$let", new Document("vars", new Document("streak", streak))
+                .append("in", new Document("days", new Document("$concatArrays", List.of("$$value.days", List.of("$$this.day"))))
+                        .append("current", "$$streak")
+                        .append("longest", new Document("$max", List.of("$$value.longest", "$$streak")))));
+        Document fold = new Document("$reduce", new Document("input", days)
+                .append("initialValue", new Document("days", new Document("$ifNull", List.of("$completion_days", List.of())))
+                        .append("current", new Document("$ifNull", List.of("$current_streak", 0)))
+                        .append("longest", new Document("$ifNull", List.of("$longest_streak", 0))))
+                .append("in", new Document("$cond", List.of(
+                        new Document("$in", List.of("$$this.day", "$$value.days")),
+                        "$$value",
+                        added))));
+        
+        Document rate = completionRate != null
+                ? new Document("$literal", completionRate)
+                : new Document("$ifNull", List.of("$completion_rate", 0.0));
+        Document folded = new Document("completion_days", new Document("$filter", new Document("input", "$_fold.days")
+                        .append("cond", new Document("$gte", List.of("$$this", toMongo(converter, today.minusDays(WEEK - 1)))))))
+                .append("current_streak", "$_fold.current")
+                .append("longest_streak", "$_fold.longest")
+                .append("completion_rate", rate);
+        
+        // Mirrors DailyRollover's window, against the trimmed days
+        List<Object> week = new ArrayList<>(WEEK);
+        for (int daysAgo = WEEK - 1; daysAgo >= 0; daysAgo--) {
+            week.add(new Document("$in", List.of(toMongo(converter, today.minusDays(daysAgo)), "$completion_days")));
+        }
+        Document window = new Document("last_week_progress", week)
+                .append("updated_at", "$$NOW")
+                .append("version", new Document("$add", List.of(new Document("$ifNull", List.of("$version", 0L)), 1L)));
+        
+        return AggregationUpdate.from(List.of(
+                context -> new Document("$set", new Document("_fold", fold)),
+                context -> new Document("$set", folded),
+                context -> new Document("$set", window),
+                context -> new Document("$unset", "_fold")));
+    }
+    
+    // Raw pipeline stages skip Spring's conversions, so dates are stored the way entities store them
+    private static Object toMongo(MongoConverter converter, LocalDate date) {
+        return converter.convertToMongoType(date);
+    }
+}
@@ -0,0 +1,200 @@
+package com.habitstack.service;
+
+import com.habitstack.model.CompletionEvent;
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.Owners;
+import com.habitstack.model.ProcessorCheckpoint;
+import com.habitstack.model.ProgressData;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Write-behind buffer between CompletionEventProcessor and progress_data. Events are folded in
+ * memory into one ProgressDelta per stack, so a user tapping through a stack produces one write
+ * instead of one per processed batch, and are flushed as unordered bulk writes every
+ * {@code habitstack.progress.flush-interval}, whenever {@code max-pending} stacks are waiting,
+ * and on shutdown.
+ * <p>
+ * Deltas are applied as update pipelines against the stored document, never as snapshots, so
+ * nothing written to progress in the meantime (a rollover, a PUT) is lost. The processor
+ * checkpoint is only advanced by a flush, after the progress it covers is stored, so events
+ * buffered by an instance that dies are folded again from the log by the next one.
+ * <p>
+ * At most {@code max-pending} stacks are buffered. When flushes keep failing the processor stops
+ * reading events at that point; they wait in the log instead of in memory.
+ */
+@Slf4j
+@Component
+class ProgressWriteBuffer {
+    
+    private static final int DUPLICATE_KEY = 11000;
+    
+    private final MongoTemplate mongoTemplate;
+    private final int maxPending;
+    private final Counter writesCoalesced;
+    
+    // Guarded by this; insertion order keeps bulk writes roughly in event order
+    private final Map<String, ProgressDelta> pending = new LinkedHashMap<>();
+    private String lastEventId;
+    
+    ProgressWriteBuffer(MongoTemplate mongoTemplate,
+                        MeterRegistry meterRegistry,
+                        @Value("${habitstack.progress.max-pending:10000}") int maxPending) {
+        this.mongoTemplate = mongoTemplate;
+        this.maxPending = maxPending;
+        
+        this.writesCoalesced = Counter.builder("habitstack.progress.writes.coalesced")
+                .description("Progress writes saved by merging into an update already waiting to be flushed")
+                .register(meterRegistry);
+        Gauge.builder("habitstack.progress.pending", this, ProgressWriteBuffer::pendingCount)
+                .description("Stacks whose progress is buffered and not yet written")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * The id of the newest event folded into the buffer; processing resumes after it rather than
+     * after the stored checkpoint, which lags until the next flush.
+     */
+    synchronized Optional<String> lastEventId() {
+        return Optional.ofNullable(lastEventId);
+    }
+    
+    /**
+     * How many more events can be folded before the buffer reaches {@code max-pending} stacks;
+     * each event adds at most one.
+     */
+    synchronized int remainingCapacity() {
+        return Math.max(0, maxPending - pending.size());
+    }
+    
+    /**
+     * Folds events, oldest first, into the deltas of their stacks and records the buffer as
+     * covering the log up to {@code lastEventId}, which may be past the last of them when events
+     * were skipped. The caller keeps the batch within {@link #remainingCapacity()}.
+     */
+    synchronized void update(List<CompletionEvent> events, String lastEventId) {
+        for (CompletionEvent event : events) {
+            ProgressDelta delta = pending.get(event.getStackId());
+            if (delta == null) {
+                delta = new ProgressDelta(event.getOwnerId());
+                pending.put(event.getStackId(), delta);
+            } else {
+                writesCoalesced.increment();
+            }
+            delta.apply(event);
+        }
+        this.lastEventId = lastEventId;
+        
+        if (pending.size() >= maxPending) {
+            flushPending();
+        }
+    }
+    
+    /**
+     * Forgets what is buffered for a deleted stack. Deletes made through another instance are
+     * caught by the flush, which skips stacks that no longer exist.
+     */
+    synchronized void discard(String stackId) {
+        pending.remove(stackId);
+    }
+    
+    @Scheduled(fixedDelayString = "${habitstack.progress.flush-interval:PT2S}")
+    public void flushPending() {
+        try {
+            flush();
+        } catch (DataAccessException e) {
+            // Everything stays buffered, and the checkpoint where it was, for the next attempt
+            log.error("Failed to flush progress for {} stacks: {}", pendingCount(), e.getMessage(), e);
+        }
+    }
+    
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushPending();
+    }
+    
+    synchronized void flush() {
+        if (lastEventId == null) {
+            return;
+        }
+        dropDeletedStacks();
+        if (!pending.isEmpty()) {
+            insertMissing();
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProgressData.class);
+            pending.forEach((stackId, delta) -> bulk.updateOne(progressQuery(stackId, delta),
+                    delta.toUpdate(mongoTemplate.getConverter())));
+            bulk.execute();
+        }
+        // Only ever moves forward: an instance whose lease ran out mid-batch flushes what it folded,
+        // but must not rewind the checkpoint past events the new holder already stored. Event ids
+        // are ObjectId hex strings, which sort in insertion order.
+        Query behind = Query.query(Criteria.where("_id").is(CompletionEventProcessor.CHECKPOINT_ID)
+                .orOperator(Criteria.where("last_event_id").is(null), Criteria.where("last_event_id").lt(lastEventId)));
+        if (mongoTemplate.updateFirst(behind, Update.update("last_event_id", lastEventId), ProcessorCheckpoint.class)
+                .getMatchedCount() == 0) {
+            log.debug("Checkpoint is already past event {}", lastEventId);
+        }
+        log.debug("Flushed progress for {} stacks up to event {}", pending.size(), lastEventId);
+        pending.clear();
+        lastEventId = null;
+    }
+    
+    // A stack deleted while its delta waited would otherwise get its progress back from the upsert
+    private void dropDeletedStacks() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Query live = Query.query(Criteria.where("_id").in(pending.keySet()));
+        live.fields().include(Owners.FIELD);
+        Map<String, String> owners = new HashMap<>();
+        mongoTemplate.find(live, HabitStack.class).forEach(stack -> owners.put(stack.getId(), stack.getOwnerId()));
+        pending.entrySet().removeIf(entry -> !entry.getValue().ownerId().equals(owners.get(entry.getKey())));
+    }
+    
+    // Pipeline upserts cannot $setOnInsert, so missing documents are created first with the same
+    // UUID ids ProgressDataService gives them; existing ones are matched and left untouched
+    private void insertMissing() {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ProgressData.class);
+        pending.forEach((stackId, delta) -> bulk.upsert(progressQuery(stackId, delta), new Update()
+                .setOnInsert("_id", UUID.randomUUID().toString())
+                .setOnInsert("version", 0L)));
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            // A duplicate stack_id means another owner's progress holds it; that delta matches nothing
+            // and is dropped, the others are unaffected
+            if (e.getErrors().stream().anyMatch(error -> error.getCode() != DUPLICATE_KEY)) {
+                throw e;
+            }
+            log.warn("Dropped progress for {} stacks whose stack_id belongs to another owner", e.getErrors().size());
+        }
+    }
+    
+    private static Query progressQuery(String stackId, ProgressDelta delta) {
+        return Query.query(Owners.ownedBy(delta.ownerId()).and("stack_id").is(stackId));
+    }
+    
+    private synchronized int pendingCount() {
+        return pending.size();
+    }
+}
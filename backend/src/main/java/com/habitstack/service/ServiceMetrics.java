@@ -0,0 +1,16 @@
+package com.habitstack.service;
+
+/**
+ * Timer names for the service layer. Every public service method is timed under TIMER with
+ * class, method and exception tags; the toggle and search paths use HOT_PATH_TIMER instead,
+ * which also publishes percentile histogram buckets. The names differ because Prometheus
+ * cannot mix histogram and non-histogram series under one metric name.
+ */
+final class ServiceMetrics {
+    
+    static final String TIMER = "habitstack.service";
+    static final String HOT_PATH_TIMER = "habitstack.service.hotpath";
+    
+    private ServiceMetrics() {
+    }
+}
@@ -0,0 +1,451 @@
+package com.habitstack.service;
+
+import com.habitstack.dto.StackEvent;
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.Owners;
+import com.habitstack.model.ProgressData;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes HabitStack and ProgressData changes to the subscribers of GET /stacks/events. One change
+ * stream on the database, opened once per instance, is fanned out in memory, so the number of
+ * cursors does not grow with the number of connected clients. Every subscriber has a bounded
+ * queue drained by the stream's own {@code threads}, so slow clients cannot hold up the shared
+ * task executor; one that falls {@code max-queued} events behind, or finds {@code max-waiting}
+ * subscribers already waiting for a thread, is disconnected and resumes on reconnect instead of
+ * holding up the others.
+ * <p>
+ * Event ids are change-stream resume tokens, which sort in change order. The newest
+ * {@code replay-size} events are kept, so a client reconnecting with Last-Event-ID is usually
+ * caught up from memory; an older token, e.g. one handed out by another instance, is caught up
+ * with a short-lived cursor resumed after it. When the oplog no longer reaches back that far the
+ * client gets a resync event and should refetch.
+ * <p>
+ * Change streams need a replica set; a single-node one ({@code mongod --replSet rs0} followed by
+ * {@code rs.initiate()}) is enough locally. Against a standalone server the stream keeps retrying
+ * and subscribers only receive heartbeats.
+ */
+@Slf4j
+@Component
+public class StackEventStream {
+    
+    private static final Duration MAX_AWAIT = Duration.ofSeconds(1);
+    private static final int HISTORY_LOST = 286;
+    private static final StackEvent HEARTBEAT = new StackEvent();
+    
+    private final MongoTemplate mongoTemplate;
+    private final ThreadPoolExecutor executor;
+    private final int replaySize;
+    private final int maxQueued;
+    private final Duration retryInterval;
+    private final String stacksCollection;
+    private final String progressCollection;
+    private final Counter subscribersDropped;
+    
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    // Guarded by itself; held while publishing and while a subscriber joins, so no event can fall
+    // between the replay and live delivery
+    private final Deque<StackEvent> recent = new ArrayDeque<>();
+    
+    private volatile boolean running;
+    private volatile boolean watching;
+    private Thread reader;
+    
+    public StackEventStream(MongoTemplate mongoTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${habitstack.events.replay-size:1000}") int replaySize,
+                            @Value("${habitstack.events.max-queued:256}") int maxQueued,
+                            @Value("${habitstack.events.threads:4}") int threads,
+                            @Value("${habitstack.events.max-waiting:10000}") int maxWaiting,
+                            @Value("${habitstack.events.retry-interval:PT10S}") Duration retryInterval) {
+        this.mongoTemplate = mongoTemplate;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("stack-events-");
+        threadFactory.setDaemon(true);
+        // Each subscriber waits in the queue at most once, so it bounds subscribers rather than events
+        this.executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(maxWaiting), threadFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+        this.replaySize = replaySize;
+        this.maxQueued = maxQueued;
+        this.retryInterval = retryInterval;
+        this.stacksCollection = mongoTemplate.getCollectionName(HabitStack.class);
+        this.progressCollection = mongoTemplate.getCollectionName(ProgressData.class);
+        
+        this.subscribersDropped = Counter.builder("habitstack.events.subscribers.dropped")
+                .description("Event subscribers disconnected for falling too far behind or finding no thread free")
+                .register(meterRegistry);
+        Gauge.builder("habitstack.events.subscribers", subscribers, Set::size)
+                .description("Open GET /stacks/events connections")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Receives the events of one subscription, one call at a time. Exceptions from
+     * {@code onEvent} and {@code onHeartbeat} end the subscription.
+     */
+    public interface Listener {
+        
+        void onEvent(StackEvent event) throws IOException;
+        
+        void onHeartbeat() throws IOException;
+        
+        /** Called when the stream ends the subscription, not when it is cancelled. */
+        void onClose();
+    }
+    
+    /**
+     * Subscribes to the owner's stack and progress changes, limited to {@code stackIds} unless
+     * that is empty. With {@code lastEventId} the events after it are delivered first.
+     *
+     * @return cancels the subscription
+     */
+    public Runnable subscribe(String ownerId, Set<String> stackIds, String lastEventId, Listener listener) {
+        Subscriber subscriber = new Subscriber(ownerId, stackIds, listener);
+        if (lastEventId == null) {
+            subscribers.add(subscriber);
+        } else {
+            try {
+                executor.execute(() -> catchUp(subscriber, lastEventId));
+            } catch (RejectedExecutionException e) {
+                subscriber.drop();
+            }
+        }
+        return subscriber::cancel;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        enablePreImages();
+        running = true;
+        reader = new Thread(this::readChanges, "stack-events");
+        reader.setDaemon(true);
+        reader.start();
+    }
+    
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (reader != null) {
+            reader.interrupt();
+        }
+        subscribers.forEach(Subscriber::close);
+        executor.shutdownNow();
+    }
+    
+    /** Whether the change stream is open, so changes made from now on are delivered. */
+    boolean isWatching() {
+        return watching;
+    }
+    
+    // Keeps idle connections from being closed by proxies and notices clients that went away
+    @Scheduled(fixedDelayString = "${habitstack.events.heartbeat-interval:PT15S}")
+    public void sendHeartbeats() {
+        subscribers.forEach(Subscriber::heartbeat);
+    }
+    
+    // Deletes carry no document; the pre-image is what tells whose stack or progress was deleted
+    private void enablePreImages() {
+        for (String collection : List.of(stacksCollection, progressCollection)) {
+            try {
+                mongoTemplate.getDb().runCommand(new Document("collMod", collection)
+                        .append("changeStreamPreAndPostImages", new Document("enabled", true)));
+            } catch (MongoException e) {
+                // Before MongoDB 6.0 or without collMod rights: deletes only reach subscribers of the stack id
+                log.warn("Cannot enable change stream pre-images on {}: {}", collection, e.getMessage());
+            }
+        }
+    }
+    
+    private void readChanges() {
+        BsonDocument resumeToken = null;
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = openCursor(resumeToken)) {
+                watching = true;
+                log.info("Watching {} and {} for changes", stacksCollection, progressCollection);
+                while (running) {
+                    // Waits up to MAX_AWAIT, so stop() is noticed
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change != null) {
+                        resumeToken = change.getResumeToken();
+                        StackEvent event = toEvent(change);
+                        if (event != null) {
+                            publish(event);
+                        }
+                    }
+                }
+            } catch (MongoException e) {
+                watching = false;
+                if (!running) {
+                    return;
+                }
+                if (e.getCode() == HISTORY_LOST) {
+                    // The oplog moved past the last event seen; start over and have everyone refetch
+                    resumeToken = null;
+                    resetSubscribers();
+                }
+                log.warn("Change stream failed, reopening in {}: {}", retryInterval, e.getMessage());
+                try {
+                    Thread.sleep(retryInterval.toMillis());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+    
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> openCursor(BsonDocument resumeAfter) {
+        List<Bson> pipeline = List.of(Aggregates.match(Filters.and(
+                Filters.in("ns.coll", stacksCollection, progressCollection),
+                Filters.in("operationType", "insert", "update", "replace", "delete"))));
+        ChangeStreamIterable<Document> changes = mongoTemplate.getDb().watch(pipeline)
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .fullDocumentBeforeChange(FullDocumentBeforeChange.WHEN_AVAILABLE)
+                .maxAwaitTime(MAX_AWAIT.toMillis(), TimeUnit.MILLISECONDS);
+        if (resumeAfter != null) {
+            changes = changes.resumeAfter(resumeAfter);
+        }
+        return changes.cursor();
+    }
+    
+    private StackEvent toEvent(ChangeStreamDocument<Document> change) {
+        String operation = change.getOperationTypeString();
+        boolean delete = "delete".equals(operation);
+        // Deletes only carry the owner when pre-images are enabled on the collection
+        Document document = delete ? change.getFullDocumentBeforeChange() : change.getFullDocument();
+        if (document == null && !delete) {
+            // Deleted before the update could be looked up; its delete event follows
+            return null;
+        }
+        
+        StackEvent.StackEventBuilder event = StackEvent.builder()
+                .id(change.getResumeToken().getString("_data").getValue())
+                .operation(operation)
+                .ownerId(document != null ? document.getString(Owners.FIELD) : null);
+        if (stacksCollection.equals(change.getNamespace().getCollectionName())) {
+            event.type(StackEvent.STACK).stackId(idOf(change.getDocumentKey().get("_id")));
+            if (!delete) {
+                event.stack(mongoTemplate.getConverter().read(HabitStack.class, document));
+            }
+        } else {
+            if (document == null) {
+                // Without a pre-image there is no telling which stack the progress belonged to
+                return null;
+            }
+            event.type(StackEvent.PROGRESS).stackId(document.getString("stack_id"));
+            if (!delete) {
+                event.progress(mongoTemplate.getConverter().read(ProgressData.class, document));
+            }
+        }
+        return event.build();
+    }
+    
+    private void publish(StackEvent event) {
+        synchronized (recent) {
+            recent.addLast(event);
+            if (recent.size() > replaySize) {
+                recent.removeFirst();
+            }
+            subscribers.forEach(subscriber -> subscriber.deliver(event));
+        }
+    }
+    
+    private void resetSubscribers() {
+        synchronized (recent) {
+            recent.clear();
+            subscribers.forEach(subscriber -> subscriber.enqueue(StackEvent.resync()));
+        }
+    }
+    
+    /**
+     * Delivers what the subscriber missed after {@code lastEventId}, from a cursor resumed after
+     * it until the events reach the replay window, then from memory, and then adds it to the
+     * live subscribers.
+     */
+    private void catchUp(Subscriber subscriber, String lastEventId) {
+        String lastSeen = lastEventId;
+        if (!inReplayWindow(lastEventId)) {
+            BsonDocument token = new BsonDocument("_data", new BsonString(lastEventId));
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = openCursor(token)) {
+                ChangeStreamDocument<Document> change;
+                while (!subscriber.closed.get() && (change = cursor.tryNext()) != null) {
+                    String id = change.getResumeToken().getString("_data").getValue();
+                    if (inReplayWindow(id)) {
+                        break;
+                    }
+                    StackEvent event = toEvent(change);
+                    if (event != null) {
+                        subscriber.deliver(event);
+                    }
+                    lastSeen = id;
+                }
+            } catch (MongoException e) {
+                log.info("Cannot resume events after {}, sending resync: {}", lastEventId, e.getMessage());
+                subscriber.enqueue(StackEvent.resync());
+                lastSeen = null;
+            }
+        }
+        
+        synchronized (recent) {
+            if (subscriber.closed.get()) {
+                return;
+            }
+            if (lastSeen != null) {
+                String after = lastSeen;
+                recent.stream()
+                        .filter(event -> event.getId().compareTo(after) > 0)
+                        .forEach(subscriber::deliver);
+            }
+            subscribers.add(subscriber);
+        }
+    }
+    
+    private boolean inReplayWindow(String eventId) {
+        synchronized (recent) {
+            return !recent.isEmpty() && recent.peekFirst().getId().compareTo(eventId) <= 0;
+        }
+    }
+    
+    private static String idOf(BsonValue id) {
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue();
+    }
+    
+    private final class Subscriber {
+        
+        private final String ownerId;
+        private final Set<String> stackIds;
+        private final Listener listener;
+        private final BlockingQueue<StackEvent> queue = new ArrayBlockingQueue<>(maxQueued);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        
+        private Subscriber(String ownerId, Set<String> stackIds, Listener listener) {
+            this.ownerId = ownerId;
+            this.stackIds = stackIds;
+            this.listener = listener;
+        }
+        
+        void deliver(StackEvent event) {
+            if (!stackIds.isEmpty() && !stackIds.contains(event.getStackId())) {
+                return;
+            }
+            // An event without owner is a delete without pre-image; only a subscriber that asked
+            // for the stack by id already knows it exists
+            if (event.getOwnerId() != null ? ownerId.equals(event.getOwnerId()) : !stackIds.isEmpty()) {
+                enqueue(event);
+            }
+        }
+        
+        void heartbeat() {
+            // Queued events keep the connection busy anyway
+            if (queue.isEmpty()) {
+                enqueue(HEARTBEAT);
+            }
+        }
+        
+        void enqueue(StackEvent event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                log.debug("Disconnecting event subscriber {} that fell {} events behind", ownerId, maxQueued);
+                drop();
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                scheduleDrain();
+            }
+        }
+        
+        private void scheduleDrain() {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                log.debug("Disconnecting event subscriber {}, no thread free to deliver to it", ownerId);
+                draining.set(false);
+                drop();
+            }
+        }
+        
+        private void drain() {
+            try {
+                StackEvent event;
+                while (!closed.get() && (event = queue.poll()) != null) {
+                    if (event == HEARTBEAT) {
+                        listener.onHeartbeat();
+                    } else {
+                        listener.onEvent(event);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Event subscriber {} went away: {}", ownerId, e.getMessage());
+                cancel();
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // Something may have been queued after the last poll but before draining was cleared
+            if (!queue.isEmpty() && !closed.get() && draining.compareAndSet(false, true)) {
+                scheduleDrain();
+            }
+        }
+        
+        void cancel() {
+            if (closed.compareAndSet(false, true)) {
+                subscribers.remove(this);
+                queue.clear();
+            }
+        }
+        
+        void drop() {
+            subscribersDropped.increment();
+            close();
+        }
+        
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscribers.remove(this);
+                queue.clear();
+                listener.onClose();
+            }
+        }
+    }
+}
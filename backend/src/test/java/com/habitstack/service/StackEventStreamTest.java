@@ -0,0 +1,167 @@
+package com.habitstack.service;
+
+import com.habitstack.dto.StackEvent;
+import com.habitstack.model.HabitStack;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.MongoDBContainer;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs StackEventStream against a real change stream. MongoDBContainer starts a single-node
+ * replica set ({@code --replSet}), which change streams need; without Docker the tests are skipped.
+ */
+@SpringBootTest
+class StackEventStreamTest {
+    
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+    
+    @Autowired
+    private StackEventStream stackEventStream;
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @BeforeAll
+    static void startMongo() {
+        Assumptions.assumeTrue(DockerClientFactory.instance().isDockerAvailable(), "Docker is not available");
+        MONGO.start();
+    }
+    
+    @DynamicPropertySource
+    static void mongoProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", MONGO::getReplicaSetUrl);
+    }
+    
+    @BeforeEach
+    void awaitChangeStream() throws InterruptedException {
+        // The cursor starts at the time it opens; anything written before is not delivered
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!stackEventStream.isWatching()) {
+            assertTrue(System.nanoTime() < deadline, "Change stream did not open");
+            Thread.sleep(100);
+        }
+    }
+    
+    @Test
+    void deliversOnlyTheOwnersChanges() throws InterruptedException {
+        String owner = UUID.randomUUID().toString();
+        Recorder recorder = new Recorder();
+        Runnable subscription = stackEventStream.subscribe(owner, Set.of(), null, recorder);
+        try {
+            insertStack(UUID.randomUUID().toString());
+            HabitStack own = insertStack(owner);
+            
+            StackEvent event = recorder.nextInsert();
+            assertEquals(StackEvent.STACK, event.getType());
+            assertEquals(own.getId(), event.getStackId());
+            assertEquals(own.getName(), event.getStack().getName());
+        } finally {
+            subscription.run();
+        }
+    }
+    
+    @Test
+    void deliversOnlyTheRequestedStacks() throws InterruptedException {
+        String owner = UUID.randomUUID().toString();
+        String wanted = UUID.randomUUID().toString();
+        Recorder recorder = new Recorder();
+        Runnable subscription = stackEventStream.subscribe(owner, Set.of(wanted), null, recorder);
+        try {
+            insertStack(owner);
+            insertStack(owner, wanted);
+            
+            assertEquals(wanted, recorder.nextInsert().getStackId());
+        } finally {
+            subscription.run();
+        }
+    }
+    
+    @Test
+    void replaysEventsAfterLastEventId() throws InterruptedException {
+        String owner = UUID.randomUUID().toString();
+        Recorder live = new Recorder();
+        Runnable subscription = stackEventStream.subscribe(owner, Set.of(), null, live);
+        HabitStack first;
+        HabitStack second;
+        StackEvent seen;
+        try {
+            first = insertStack(owner);
+            second = insertStack(owner);
+            seen = live.nextInsert();
+            assertEquals(first.getId(), seen.getStackId());
+            assertEquals(second.getId(), live.nextInsert().getStackId());
+        } finally {
+            subscription.run();
+        }
+        
+        Recorder reconnected = new Recorder();
+        subscription = stackEventStream.subscribe(owner, Set.of(), seen.getId(), reconnected);
+        try {
+            assertEquals(second.getId(), reconnected.nextInsert().getStackId());
+        } finally {
+            subscription.run();
+        }
+    }
+    
+    private HabitStack insertStack(String ownerId) {
+        return insertStack(ownerId, UUID.randomUUID().toString());
+    }
+    
+    private HabitStack insertStack(String ownerId, String id) {
+        HabitStack stack = HabitStack.builder()
+                .id(id)
+                .ownerId(ownerId)
+                .name("Stack " + id)
+                .build();
+        return mongoTemplate.insert(stack);
+    }
+    
+    private static final class Recorder implements StackEventStream.Listener {
+        
+        private final BlockingQueue<StackEvent> events = new LinkedBlockingQueue<>();
+        
+        // Background jobs such as the rollover may also update the stacks; only inserts are asserted on
+        StackEvent nextInsert() throws InterruptedException {
+            while (true) {
+                StackEvent event = events.poll(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                assertNotNull(event, "No event within " + TIMEOUT);
+                if ("insert".equals(event.getOperation())) {
+                    return event;
+                }
+            }
+        }
+        
+        @Override
+        public void onEvent(StackEvent event) {
+            events.add(event);
+        }
+        
+        @Override
+        public void onHeartbeat() {
+        }
+        
+        @Override
+        public void onClose() {
+        }
+    }
+}
@@ -0,0 +1,19 @@
+#!/bin/bash
+
+# Builds the backend and the JMH module, then runs the benchmarks and writes JSON results to
+# results/<commit>.json so runs from different commits can be compared.
+# Extra arguments go straight to JMH, e.g. "StackHelper" or "-p stackSize=1000".
+
+set -e
+
+cd "$(dirname "$0")"
+RESULTS_DIR=results
+mkdir -p "$RESULTS_DIR"
+
+COMMIT=$(git rev-parse --short HEAD 2>/dev/null || echo local)
+
+mvn -q -f ../../backend/pom.xml install -DskipTests
+mvn -q package
+
+java -jar target/benchmarks.jar -rf json -rff "$RESULTS_DIR/$COMMIT.json" "$@"
+echo "Results written to $RESULTS_DIR/$COMMIT.json"
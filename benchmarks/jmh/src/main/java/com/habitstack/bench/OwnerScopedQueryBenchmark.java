@@ -0,0 +1,163 @@
+package com.habitstack.bench;
+
+import com.habitstack.HabitStackApplication;
+import com.habitstack.dto.CursorPage;
+import com.habitstack.model.Habit;
+import com.habitstack.model.HabitCategory;
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.ProgressData;
+import com.habitstack.model.StackHabit;
+import com.habitstack.service.HabitService;
+import com.habitstack.service.HabitStackService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.testcontainers.containers.MongoDBContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-owner reads while the number of owners grows and each owner's data stays the same size.
+ * With every query led by an {owner_id, ...} index the latency should stay flat across
+ * {@code users}; growth with it means a query is scanning other owners' documents.
+ * Runs against a throwaway MongoDB container, or against the instance given by
+ * -Dbench.mongo.uri=... when Docker is not available.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class OwnerScopedQueryBenchmark {
+    
+    private static final String MONGO_IMAGE = "mongo:7.0";
+    private static final int HABITS_PER_USER = 40;
+    private static final int STACKS_PER_USER = 8;
+    private static final int HABITS_PER_STACK = 5;
+    private static final int CATEGORIES = 4;
+    private static final int PAGE_SIZE = 20;
+    private static final int INSERT_BATCH = 10_000;
+    
+    @Param({"10", "100", "1000", "10000"})
+    private int users;
+    
+    private MongoDBContainer mongo;
+    private ConfigurableApplicationContext context;
+    private HabitService habitService;
+    private HabitStackService habitStackService;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        String mongoUri = System.getProperty("bench.mongo.uri");
+        if (mongoUri == null) {
+            mongo = new MongoDBContainer(MONGO_IMAGE);
+            mongo.start();
+            mongoUri = mongo.getReplicaSetUrl();
+        }
+        
+        context = new SpringApplicationBuilder(HabitStackApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.data.mongodb.uri=" + mongoUri,
+                        "spring.data.mongodb.database=habitstack_bench_owners",
+                        // Indexes are built before startup completes, and a COLLSCAN fails the run
+                        "habitstack.indexes.verify-plans=true",
+                        "logging.level.com.habitstack=WARN",
+                        "logging.level.org.springframework.data.mongodb=WARN",
+                        "logging.file.name=")
+                .run();
+        habitService = context.getBean(HabitService.class);
+        habitStackService = context.getBean(HabitStackService.class);
+        
+        seed(context.getBean(MongoTemplate.class));
+    }
+    
+    // Written straight through MongoTemplate: going through the services would take minutes at 10000 users
+    private void seed(MongoTemplate mongoTemplate) {
+        // Leftovers from a previous users value would skew the collection size; the indexes stay
+        List.of(Habit.class, HabitStack.class, ProgressData.class, HabitCategory.class)
+                .forEach(type -> mongoTemplate.remove(new Query(), type));
+        
+        for (int first = 0; first < users; first += INSERT_BATCH / HABITS_PER_USER) {
+            int last = Math.min(users, first + INSERT_BATCH / HABITS_PER_USER);
+            List<Habit> habits = new ArrayList<>();
+            for (int user = first; user < last; user++) {
+                for (int i = 0; i < HABITS_PER_USER; i++) {
+                    Habit habit = new Habit("Habit " + i, category(i), 10, null);
+                    habit.setOwnerId(owner(user));
+                    habits.add(habit);
+                }
+            }
+            mongoTemplate.insert(habits, Habit.class);
+            
+            List<HabitStack> stacks = new ArrayList<>();
+            for (int user = first; user < last; user++) {
+                int userOffset = (user - first) * HABITS_PER_USER;
+                for (int s = 0; s < STACKS_PER_USER; s++) {
+                    List<StackHabit> stackHabits = new ArrayList<>(HABITS_PER_STACK);
+                    for (int h = 0; h < HABITS_PER_STACK; h++) {
+                        stackHabits.add(new StackHabit(habits.get(userOffset + (s * HABITS_PER_STACK + h) % HABITS_PER_USER).getId()));
+                    }
+                    HabitStack stack = new HabitStack("Stack " + s, stackHabits);
+                    stack.setOwnerId(owner(user));
+                    stacks.add(stack.refreshCounts());
+                }
+            }
+            mongoTemplate.insert(stacks, HabitStack.class);
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+        if (mongo != null) {
+            mongo.stop();
+        }
+    }
+    
+    @Benchmark
+    public List<Habit> habitsByCategory() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return habitService.getHabitsByCategory(owner(random.nextInt(users)), category(random.nextInt(CATEGORIES)));
+    }
+    
+    @Benchmark
+    public CursorPage<Habit> habitsFirstPage() {
+        return habitService.getHabitsPage(owner(ThreadLocalRandom.current().nextInt(users)), null, null, PAGE_SIZE);
+    }
+    
+    @Benchmark
+    public List<HabitStack> stacksWithExpandedHabits() {
+        String ownerId = owner(ThreadLocalRandom.current().nextInt(users));
+        return habitStackService.expandHabits(ownerId, habitStackService.getAllStacks(ownerId));
+    }
+    
+    private static String owner(int user) {
+        return "user-" + user;
+    }
+    
+    private static String category(int index) {
+        return "Category " + index % CATEGORIES;
+    }
+}
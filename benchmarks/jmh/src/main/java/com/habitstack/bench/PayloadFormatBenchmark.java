@@ -0,0 +1,111 @@
+package com.habitstack.bench;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.StackHabit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encode time and payload size of a 1k-stack GET /stacks response in each negotiated format.
+ * The size appears in the JSON results as the payloadBytes secondary metric.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadFormatBenchmark {
+    
+    private static final int STACKS = 1000;
+    private static final int HABITS_PER_STACK = 5;
+    
+    @Param({"json", "json_gzip", "cbor", "smile"})
+    private String format;
+    
+    private ObjectMapper objectMapper;
+    private boolean gzip;
+    private List<HabitStack> stacks;
+    
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+        public long payloadBytes;
+        
+        @Setup(Level.Iteration)
+        public void reset() {
+            payloadBytes = 0;
+        }
+    }
+    
+    @Setup
+    public void setUp() {
+        JsonFactory factory = switch (format) {
+            case "cbor" -> new CBORFactory();
+            case "smile" -> new SmileFactory();
+            default -> new JsonFactory();
+        };
+        gzip = format.endsWith("_gzip");
+        // Same settings as spring.jackson in application.yml
+        objectMapper = new ObjectMapper(factory)
+                .registerModule(new JavaTimeModule())
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        
+        stacks = new ArrayList<>(STACKS);
+        for (int i = 0; i < STACKS; i++) {
+            List<StackHabit> habits = new ArrayList<>(HABITS_PER_STACK);
+            for (int j = 0; j < HABITS_PER_STACK; j++) {
+                habits.add(StackHabit.builder().habitId("65f1c2a9e4b0a1" + String.format("%010d", i * HABITS_PER_STACK + j))
+                        .completed((i + j) % 3 == 0)
+                        .build());
+            }
+            HabitStack stack = new HabitStack("Morning routine " + i, habits);
+            stack.setLastCompleted(LocalDateTime.now().minusDays(i % 7));
+            stacks.add(stack.refreshCounts());
+        }
+    }
+    
+    @Benchmark
+    public byte[] encodeStacks(PayloadSize size) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256 * 1024);
+        if (gzip) {
+            try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+                objectMapper.writeValue(out, stacks);
+            }
+        } else {
+            objectMapper.writeValue(buffer, stacks);
+        }
+        byte[] payload = buffer.toByteArray();
+        size.payloadBytes = payload.length;
+        return payload;
+    }
+}
@@ -0,0 +1,124 @@
+package com.habitstack.bench;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.habitstack.model.Habit;
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.Owners;
+import com.habitstack.model.ProgressData;
+import com.habitstack.model.StackHabit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson round trips of the list payloads returned by GET /habits, /stacks and /progress.
+ * The mapper mirrors the spring.jackson settings in application.yml.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+    
+    private static final TypeReference<List<Habit>> HABIT_LIST = new TypeReference<>() {};
+    private static final TypeReference<List<HabitStack>> STACK_LIST = new TypeReference<>() {};
+    private static final TypeReference<List<ProgressData>> PROGRESS_LIST = new TypeReference<>() {};
+    
+    @Param({"10", "100", "1000"})
+    private int listSize;
+    
+    private ObjectMapper objectMapper;
+    
+    private List<Habit> habits;
+    private List<HabitStack> stacks;
+    private List<ProgressData> progress;
+    
+    private byte[] habitsJson;
+    private byte[] stacksJson;
+    private byte[] progressJson;
+    
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = JsonMapper.builder()
+                .addModule(new JavaTimeModule())
+                .serializationInclusion(JsonInclude.Include.NON_NULL)
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+        
+        habits = new ArrayList<>(listSize);
+        stacks = new ArrayList<>(listSize);
+        progress = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            Habit habit = new Habit("Habit " + i, "Fitness", 10 + i % 50, "Description of habit number " + i);
+            habits.add(habit);
+            
+            List<StackHabit> stackHabits = new ArrayList<>();
+            for (int j = 0; j < 5; j++) {
+                stackHabits.add(StackHabit.builder().habitId("habit-" + (i + j)).completed(j % 2 == 0).build());
+            }
+            HabitStack stack = new HabitStack("Stack " + i, stackHabits);
+            stacks.add(stack);
+            
+            ProgressData data = new ProgressData(Owners.DEFAULT, stack.getId());
+            data.setCurrentStreak(i % 7);
+            data.setLongestStreak(i % 30);
+            data.setCompletionRate(i % 100 / 100.0);
+            progress.add(data);
+        }
+        
+        habitsJson = objectMapper.writeValueAsBytes(habits);
+        stacksJson = objectMapper.writeValueAsBytes(stacks);
+        progressJson = objectMapper.writeValueAsBytes(progress);
+    }
+    
+    @Benchmark
+    public byte[] serializeHabits() throws Exception {
+        return objectMapper.writeValueAsBytes(habits);
+    }
+    
+    @Benchmark
+    public byte[] serializeStacks() throws Exception {
+        return objectMapper.writeValueAsBytes(stacks);
+    }
+    
+    @Benchmark
+    public byte[] serializeProgress() throws Exception {
+        return objectMapper.writeValueAsBytes(progress);
+    }
+    
+    @Benchmark
+    public List<Habit> deserializeHabits() throws Exception {
+        return objectMapper.readValue(habitsJson, HABIT_LIST);
+    }
+    
+    @Benchmark
+    public List<HabitStack> deserializeStacks() throws Exception {
+        return objectMapper.readValue(stacksJson, STACK_LIST);
+    }
+    
+    @Benchmark
+    public List<ProgressData> deserializeProgress() throws Exception {
+        return objectMapper.readValue(progressJson, PROGRESS_LIST);
+    }
+}
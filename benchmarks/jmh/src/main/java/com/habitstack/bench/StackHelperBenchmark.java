@@ -0,0 +1,69 @@
+package com.habitstack.bench;
+
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.StackHabit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HabitStack's derived helpers, which walk the habit list on every call.
+ * completedRatio 1.0 is the worst case for isCompleted (no early exit).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StackHelperBenchmark {
+    
+    @Param({"1", "10", "100", "1000", "10000"})
+    private int stackSize;
+    
+    @Param({"0.5", "1.0"})
+    private double completedRatio;
+    
+    private HabitStack stack;
+    
+    @Setup
+    public void setUp() {
+        int completed = (int) Math.round(stackSize * completedRatio);
+        List<StackHabit> habits = new ArrayList<>(stackSize);
+        for (int i = 0; i < stackSize; i++) {
+            // Completed habits at the end so a partial stack still has to be scanned past its first entry
+            habits.add(StackHabit.builder()
+                    .habitId("habit-" + i)
+                    .completed(i >= stackSize - completed)
+                    .build());
+        }
+        stack = new HabitStack("Benchmark stack", habits);
+    }
+    
+    @Benchmark
+    public boolean isCompleted() {
+        return stack.isCompleted();
+    }
+    
+    @Benchmark
+    public int getCompletedCount() {
+        return stack.getCompletedCount();
+    }
+    
+    @Benchmark
+    public double getCompletionPercentage() {
+        return stack.getCompletionPercentage();
+    }
+}
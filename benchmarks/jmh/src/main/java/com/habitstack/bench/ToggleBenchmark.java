@@ -0,0 +1,101 @@
+package com.habitstack.bench;
+
+import com.habitstack.HabitStackApplication;
+import com.habitstack.model.HabitStack;
+import com.habitstack.model.Owners;
+import com.habitstack.model.StackHabit;
+import com.habitstack.service.HabitStackService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.MongoDBContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HabitStackService.toggleHabitCompletion end to end: the findAndModify pipeline update plus the
+ * completion event insert. Runs against a throwaway MongoDB container, or against the instance
+ * given by -Dbench.mongo.uri=... when Docker is not available.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ToggleBenchmark {
+    
+    private static final String MONGO_IMAGE = "mongo:7.0";
+    
+    @Param({"1", "10", "100"})
+    private int stackSize;
+    
+    private MongoDBContainer mongo;
+    private ConfigurableApplicationContext context;
+    private HabitStackService habitStackService;
+    
+    private String stackId;
+    private List<String> habitIds;
+    private int next;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        String mongoUri = System.getProperty("bench.mongo.uri");
+        if (mongoUri == null) {
+            mongo = new MongoDBContainer(MONGO_IMAGE);
+            mongo.start();
+            mongoUri = mongo.getReplicaSetUrl();
+        }
+        
+        context = new SpringApplicationBuilder(HabitStackApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.data.mongodb.uri=" + mongoUri,
+                        "spring.data.mongodb.database=habitstack_bench",
+                        "logging.level.com.habitstack=WARN",
+                        "logging.level.org.springframework.data.mongodb=WARN",
+                        "logging.file.name=")
+                .run();
+        habitStackService = context.getBean(HabitStackService.class);
+        
+        habitIds = new ArrayList<>(stackSize);
+        List<StackHabit> habits = new ArrayList<>(stackSize);
+        for (int i = 0; i < stackSize; i++) {
+            habitIds.add("habit-" + i);
+            habits.add(new StackHabit("habit-" + i));
+        }
+        stackId = habitStackService.createStack(Owners.DEFAULT, new HabitStack("Toggle benchmark " + stackSize, habits)).getId();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+        if (mongo != null) {
+            mongo.stop();
+        }
+    }
+    
+    @Benchmark
+    public HabitStack toggleHabitCompletion() {
+        // Walk the habits so every position in the array gets toggled, not just the first one
+        String habitId = habitIds.get(next++ % habitIds.size());
+        return habitStackService.toggleHabitCompletion(Owners.DEFAULT, stackId, habitId);
+    }
+}
@@ -0,0 +1,12 @@
+#!/bin/bash
+
+# Boots the backend against a local MongoDB container and runs the release load mix.
+# Arguments are passed to the generator, e.g. "--rps 500 --duration 120".
+
+set -e
+
+cd "$(dirname "$0")"
+mkdir -p results
+
+mvn -q -f ../../backend/pom.xml install -DskipTests
+mvn -q compile exec:java -Dexec.args="--out results/$(date +%Y%m%d-%H%M%S).json $*"
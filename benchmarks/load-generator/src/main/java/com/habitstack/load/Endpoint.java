@@ -0,0 +1,77 @@
+package com.habitstack.load;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The request types in the release load mix. Names are what --mix refers to.
+ */
+enum Endpoint {
+    HABITS("habits", "GET /habits"),
+    HABIT_SEARCH("habit_search", "GET /habits?search="),
+    STACKS("stacks", "GET /stacks"),
+    TOGGLE("toggle", "POST /stacks/toggle-habit"),
+    PROGRESS("progress", "GET /progress/{stackId}");
+    
+    private static final String[] SEARCH_TERMS = {"run", "read", "medit", "water", "walk", "journal", "stretch"};
+    
+    private final String key;
+    private final String label;
+    
+    Endpoint(String key, String label) {
+        this.key = key;
+        this.label = label;
+    }
+    
+    String key() {
+        return key;
+    }
+    
+    String label() {
+        return label;
+    }
+    
+    static Endpoint fromKey(String key) {
+        for (Endpoint endpoint : values()) {
+            if (endpoint.key.equals(key)) {
+                return endpoint;
+            }
+        }
+        throw new IllegalArgumentException("Unknown endpoint in mix: " + key);
+    }
+    
+    HttpRequest request(String baseUrl, Fixture fixture) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (this) {
+            case HABITS:
+                return get(baseUrl + "/habits");
+            case HABIT_SEARCH:
+                String term = SEARCH_TERMS[random.nextInt(SEARCH_TERMS.length)];
+                return get(baseUrl + "/habits?search=" + URLEncoder.encode(term, StandardCharsets.UTF_8));
+            case STACKS:
+                return get(baseUrl + "/stacks");
+            case TOGGLE:
+                Fixture.SeededStack stack = fixture.randomStack();
+                String habitId = stack.habitIds().get(random.nextInt(stack.habitIds().size()));
+                String body = "{\"stack_id\":\"" + stack.id() + "\",\"habit_id\":\"" + habitId + "\"}";
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/stacks/toggle-habit"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+            case PROGRESS:
+                return get(baseUrl + "/progress/" + fixture.randomStack().id());
+            default:
+                throw new IllegalStateException("Unhandled endpoint " + this);
+        }
+    }
+    
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+    }
+}
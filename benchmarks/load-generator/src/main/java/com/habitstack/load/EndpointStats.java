@@ -0,0 +1,73 @@
+package com.habitstack.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and error counts for one endpoint. Latency is measured from the time the request was
+ * scheduled to be sent, not from when it actually went out, so a stalled server shows up as tail
+ * latency instead of as fewer requests (coordinated omission).
+ */
+class EndpointStats {
+    
+    private static final long MAX_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    
+    private final Endpoint endpoint;
+    private final Recorder recorder = new Recorder(MAX_TRACKABLE_NANOS, 3);
+    private final LongAdder errors = new LongAdder();
+    private Histogram total = new Histogram(MAX_TRACKABLE_NANOS, 3);
+    
+    EndpointStats(Endpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+    
+    void record(long intendedStartNanos, boolean failed) {
+        long latency = Math.min(System.nanoTime() - intendedStartNanos, MAX_TRACKABLE_NANOS);
+        recorder.recordValue(latency);
+        if (failed) {
+            errors.increment();
+        }
+    }
+    
+    /**
+     * Drops everything recorded so far; used at the end of the warmup.
+     */
+    void reset() {
+        recorder.reset();
+        errors.reset();
+        total = new Histogram(MAX_TRACKABLE_NANOS, 3);
+    }
+    
+    Histogram snapshot() {
+        total.add(recorder.getIntervalHistogram());
+        return total;
+    }
+    
+    String toJson() {
+        Histogram histogram = snapshot();
+        long count = histogram.getTotalCount();
+        return String.format(Locale.ROOT,
+                "{\"endpoint\":\"%s\",\"requests\":%d,\"errors\":%d,\"error_rate\":%.4f,"
+                        + "\"p50_ms\":%.2f,\"p95_ms\":%.2f,\"p99_ms\":%.2f,\"max_ms\":%.2f}",
+                endpoint.label(), count, errors.sum(), count == 0 ? 0.0 : (double) errors.sum() / count,
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(95)),
+                millis(histogram.getValueAtPercentile(99)), millis(histogram.getMaxValue()));
+    }
+    
+    String toRow() {
+        Histogram histogram = snapshot();
+        long count = histogram.getTotalCount();
+        return String.format(Locale.ROOT, "%-28s %9d %7.2f%% %9.2f %9.2f %9.2f %9.2f",
+                endpoint.label(), count, count == 0 ? 0.0 : 100.0 * errors.sum() / count,
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(95)),
+                millis(histogram.getValueAtPercentile(99)), millis(histogram.getMaxValue()));
+    }
+    
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
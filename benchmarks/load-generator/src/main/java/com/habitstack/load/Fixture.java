@@ -0,0 +1,79 @@
+package com.habitstack.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Seeds habits and stacks through the public API so the run exercises the same write path as the
+ * frontend, and remembers their ids for the requests that need them.
+ */
+class Fixture {
+    
+    private static final String[] CATEGORIES = {"Fitness", "Mental Health", "Productivity", "Nutrition", "Sleep", "Social"};
+    private static final String[] NAMES = {"Morning run", "Read ten pages", "Meditate", "Drink water", "Evening walk",
+            "Journal", "Stretch", "Plan the day", "Cook a meal", "Call a friend"};
+    
+    record SeededStack(String id, List<String> habitIds) {
+    }
+    
+    private final List<SeededStack> stacks;
+    
+    private Fixture(List<SeededStack> stacks) {
+        this.stacks = stacks;
+    }
+    
+    static Fixture seed(HttpClient client, ObjectMapper objectMapper, String baseUrl,
+                        int habitCount, int stackCount, int habitsPerStack) throws IOException, InterruptedException {
+        List<String> habitIds = new ArrayList<>(habitCount);
+        for (int i = 0; i < habitCount; i++) {
+            String body = objectMapper.createObjectNode()
+                    .put("name", NAMES[i % NAMES.length] + " " + i)
+                    .put("category", CATEGORIES[i % CATEGORIES.length])
+                    .put("time", 5 + i % 55)
+                    .put("description", "Load test habit " + i)
+                    .toString();
+            habitIds.add(post(client, objectMapper, baseUrl + "/habits", body).get("id").asText());
+        }
+        
+        List<SeededStack> stacks = new ArrayList<>(stackCount);
+        for (int i = 0; i < stackCount; i++) {
+            List<String> stackHabitIds = new ArrayList<>(habitsPerStack);
+            var stack = objectMapper.createObjectNode().put("name", "Load test stack " + i);
+            var habits = stack.putArray("habits");
+            for (int j = 0; j < habitsPerStack; j++) {
+                String habitId = habitIds.get((i * habitsPerStack + j) % habitIds.size());
+                stackHabitIds.add(habitId);
+                habits.addObject().put("habitId", habitId);
+            }
+            String id = post(client, objectMapper, baseUrl + "/stacks", stack.toString()).get("id").asText();
+            stacks.add(new SeededStack(id, stackHabitIds));
+        }
+        return new Fixture(stacks);
+    }
+    
+    SeededStack randomStack() {
+        return stacks.get(ThreadLocalRandom.current().nextInt(stacks.size()));
+    }
+    
+    private static JsonNode post(HttpClient client, ObjectMapper objectMapper, String url, String body)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 201) {
+            throw new IllegalStateException("Seeding " + url + " failed with " + response.statusCode() + ": " + response.body());
+        }
+        return objectMapper.readTree(response.body());
+    }
+}
@@ -0,0 +1,169 @@
+package com.habitstack.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.habitstack.HabitStackApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.MongoDBContainer;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for the REST API. Requests are sent on a fixed schedule derived from
+ * the target rate regardless of how fast responses come back, and each latency is measured from
+ * its scheduled send time.
+ * <p>
+ * By default it starts MongoDB in a container and boots the application on a random port; pass
+ * --base-url to load an already running deployment instead.
+ * <p>
+ * Options: --rps 200 --duration 60 --warmup 10
+ * --mix habits=30,habit_search=15,stacks=20,toggle=20,progress=15 --base-url URL --out FILE
+ */
+public class LoadGenerator {
+    
+    private static final String MONGO_IMAGE = "mongo:7.0";
+    private static final String DEFAULT_MIX = "habits=30,habit_search=15,stacks=20,toggle=20,progress=15";
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int rps = Integer.parseInt(options.getOrDefault("rps", "200"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        List<Endpoint> mix = parseMix(options.getOrDefault("mix", DEFAULT_MIX));
+        
+        MongoDBContainer mongo = null;
+        ConfigurableApplicationContext context = null;
+        String baseUrl = options.get("base-url");
+        if (baseUrl == null) {
+            mongo = new MongoDBContainer(MONGO_IMAGE);
+            mongo.start();
+            context = new SpringApplicationBuilder(HabitStackApplication.class)
+                    .properties(
+                            "server.port=0",
+                            "spring.data.mongodb.uri=" + mongo.getReplicaSetUrl(),
+                            "spring.data.mongodb.database=habitstack_load",
+                            "logging.level.com.habitstack=WARN",
+                            "logging.level.org.springframework.data.mongodb=WARN",
+                            "logging.file.name=")
+                    .run();
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api";
+        }
+        
+        ExecutorService callbacks = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(callbacks)
+                .build();
+        
+        try {
+            ObjectMapper objectMapper = new ObjectMapper();
+            Fixture fixture = Fixture.seed(client, objectMapper, baseUrl, 200, 50, 5);
+            
+            Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+            for (Endpoint endpoint : Endpoint.values()) {
+                stats.put(endpoint, new EndpointStats(endpoint));
+            }
+            
+            System.err.printf(Locale.ROOT, "Warming up for %ds at %d req/s against %s%n", warmup.getSeconds(), rps, baseUrl);
+            drive(client, baseUrl, fixture, mix, stats, rps, warmup);
+            stats.values().forEach(EndpointStats::reset);
+            
+            System.err.printf(Locale.ROOT, "Measuring for %ds%n", duration.getSeconds());
+            drive(client, baseUrl, fixture, mix, stats, rps, duration);
+            
+            System.err.printf(Locale.ROOT, "%-28s %9s %8s %9s %9s %9s %9s%n",
+                    "endpoint", "requests", "errors", "p50 ms", "p95 ms", "p99 ms", "max ms");
+            List<String> json = new ArrayList<>();
+            for (Endpoint endpoint : mix.stream().distinct().toList()) {
+                System.err.println(stats.get(endpoint).toRow());
+                json.add(stats.get(endpoint).toJson());
+            }
+            
+            String report = String.format(Locale.ROOT, "{\"target_rps\":%d,\"duration_seconds\":%d,\"mix\":\"%s\",\"endpoints\":[%s]}",
+                    rps, duration.getSeconds(), options.getOrDefault("mix", DEFAULT_MIX), String.join(",", json));
+            String out = options.get("out");
+            if (out != null) {
+                Files.writeString(Path.of(out), report + System.lineSeparator());
+            } else {
+                System.out.println(report);
+            }
+        } finally {
+            callbacks.shutdownNow();
+            if (context != null) {
+                context.close();
+            }
+            if (mongo != null) {
+                mongo.stop();
+            }
+        }
+    }
+    
+    /**
+     * Sends requests at a constant rate for the given duration, then waits briefly for stragglers.
+     * Each request is dispatched asynchronously so a slow response never delays the next send.
+     */
+    private static void drive(HttpClient client, String baseUrl, Fixture fixture, List<Endpoint> mix,
+                              Map<Endpoint, EndpointStats> stats, int rps, Duration duration) throws InterruptedException {
+        long interval = TimeUnit.SECONDS.toNanos(1) / rps;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        
+        for (long intended = start; intended < end; intended += interval) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            
+            Endpoint endpoint = mix.get(ThreadLocalRandom.current().nextInt(mix.size()));
+            EndpointStats endpointStats = stats.get(endpoint);
+            long scheduledAt = intended;
+            client.sendAsync(endpoint.request(baseUrl, fixture), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) ->
+                            endpointStats.record(scheduledAt, error != null || response.statusCode() >= 400));
+        }
+        Thread.sleep(TimeUnit.SECONDS.toMillis(2));
+    }
+    
+    /**
+     * Expands "habits=30,toggle=20" into a list where each endpoint appears as often as its weight,
+     * so picking a uniformly random element follows the requested mix.
+     */
+    private static List<Endpoint> parseMix(String mix) {
+        List<Endpoint> weighted = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            Endpoint endpoint = Endpoint.fromKey(parts[0]);
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+            for (int i = 0; i < weight; i++) {
+                weighted.add(endpoint);
+            }
+        }
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("Request mix is empty");
+        }
+        return weighted;
+    }
+    
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        return options;
+    }
+}
@@ -0,0 +1,40 @@
+#!/bin/bash
+
+# Runs the throughput sweep against the servlet deployment and then the reactive profile.
+# Expects MongoDB at $MONGO_URL (default mongodb://localhost:27017) with representative data.
+
+set -e
+
+cd "$(dirname "$0")"
+BACKEND_DIR=../../backend
+RESULTS_DIR=results
+mkdir -p "$RESULTS_DIR"
+
+export MONGO_URL=${MONGO_URL:-mongodb://localhost:27017}
+export DB_NAME=${DB_NAME:-habitstack}
+
+(cd "$BACKEND_DIR" && mvn -q clean package -DskipTests)
+mvn -q -f ../pom.xml -pl throughput package
+
+BACKEND_JAR=$(ls "$BACKEND_DIR"/target/habit-stack-builder-*-exec.jar | head -1)
+BENCH_JAR=target/throughput-benchmark-1.0.0.jar
+
+for MODE in servlet reactive; do
+    PROFILE=""
+    if [ "$MODE" = "reactive" ]; then
+        PROFILE="--spring.profiles.active=reactive"
+    fi
+
+    echo "Starting backend in $MODE mode..."
+    java -jar "$BACKEND_JAR" $PROFILE --logging.level.com.habitstack=WARN > "$RESULTS_DIR/$MODE-server.log" 2>&1 &
+    SERVER_PID=$!
+    trap 'kill $SERVER_PID 2>/dev/null' EXIT
+
+    until curl -sf http://localhost:8001/api/ > /dev/null; do sleep 1; done
+
+    java -jar "$BENCH_JAR" --base-url http://localhost:8001/api --mode "$MODE" "$@" > "$RESULTS_DIR/$MODE.json"
+    echo "Results written to $RESULTS_DIR/$MODE.json"
+
+    kill $SERVER_PID
+    wait $SERVER_PID 2>/dev/null || true
+done
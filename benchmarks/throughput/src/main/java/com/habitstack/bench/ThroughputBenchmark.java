@@ -0,0 +1,180 @@
+package com.habitstack.bench;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop throughput sweep over the read endpoints. Each of N workers sends the next request
+ * as soon as the previous one returns, so throughput at high N shows where the server stops
+ * scaling: thread-pool saturation in servlet mode, CPU in reactive mode.
+ * <p>
+ * Usage: {@code java -jar throughput-benchmark.jar --base-url http://localhost:8001/api
+ * --mode servlet --concurrency 16,64,256,1024 --duration 30 --warmup 10}
+ * <p>
+ * Prints one JSON document with requests/second, error count and latency percentiles per level.
+ */
+public class ThroughputBenchmark {
+    
+    private static final List<String> ENDPOINTS = List.of("/habits", "/stacks", "/categories", "/progress");
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        String baseUrl = options.getOrDefault("base-url", "http://localhost:8001/api");
+        String mode = options.getOrDefault("mode", "unknown");
+        int[] levels = Arrays.stream(options.getOrDefault("concurrency", "16,64,256,1024").split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()))
+                .build();
+        
+        List<String> results = new ArrayList<>();
+        for (int concurrency : levels) {
+            run(client, baseUrl, concurrency, warmup);
+            LevelResult result = run(client, baseUrl, concurrency, duration);
+            System.err.printf(Locale.ROOT, "%s c=%d: %.0f req/s, p99 %.1f ms, %d errors%n",
+                    mode, concurrency, result.throughput(), result.percentileMillis(0.99), result.errors);
+            results.add(result.toJson());
+        }
+        
+        System.out.printf(Locale.ROOT, "{\"mode\":\"%s\",\"base_url\":\"%s\",\"duration_seconds\":%d,\"levels\":[%s]}%n",
+                mode, baseUrl, duration.getSeconds(), String.join(",", results));
+        System.exit(0);
+    }
+    
+    private static LevelResult run(HttpClient client, String baseUrl, int concurrency, Duration duration)
+            throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        CountDownLatch done = new CountDownLatch(concurrency);
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Worker> states = new ArrayList<>();
+        
+        for (int i = 0; i < concurrency; i++) {
+            Worker worker = new Worker(i);
+            states.add(worker);
+            workers.execute(() -> {
+                try {
+                    worker.loop(client, baseUrl, deadline);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+        
+        LevelResult result = new LevelResult(concurrency, duration);
+        states.forEach(result::merge);
+        return result;
+    }
+    
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        return options;
+    }
+    
+    private static final class Worker {
+        private int next;
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+        
+        Worker(int offset) {
+            this.next = offset;
+        }
+        
+        void loop(HttpClient client, String baseUrl, long deadline) {
+            while (System.nanoTime() < deadline) {
+                String endpoint = ENDPOINTS.get(next++ % ENDPOINTS.size());
+                HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + endpoint))
+                        .timeout(Duration.ofSeconds(30))
+                        .header("Accept", "application/json")
+                        .GET()
+                        .build();
+                long start = System.nanoTime();
+                try {
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() >= 400) {
+                        errors++;
+                    }
+                } catch (IOException e) {
+                    errors++;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                record(System.nanoTime() - start);
+            }
+        }
+        
+        private void record(long nanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+    }
+    
+    private static final class LevelResult {
+        private final int concurrency;
+        private final Duration duration;
+        private long[] latencies = new long[0];
+        private long errors;
+        
+        LevelResult(int concurrency, Duration duration) {
+            this.concurrency = concurrency;
+            this.duration = duration;
+        }
+        
+        void merge(Worker worker) {
+            int offset = latencies.length;
+            latencies = Arrays.copyOf(latencies, offset + worker.count);
+            System.arraycopy(worker.latencies, 0, latencies, offset, worker.count);
+            errors += worker.errors;
+        }
+        
+        double throughput() {
+            return (double) latencies.length / duration.toMillis() * 1000;
+        }
+        
+        double percentileMillis(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+            return sorted[Math.max(0, index)] / 1_000_000.0;
+        }
+        
+        String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"concurrency\":%d,\"requests\":%d,\"errors\":%d,\"requests_per_second\":%.1f,"
+                            + "\"p50_ms\":%.2f,\"p99_ms\":%.2f,\"max_ms\":%.2f}",
+                    concurrency, latencies.length, errors, throughput(),
+                    percentileMillis(0.50), percentileMillis(0.99), percentileMillis(1.0));
+        }
+    }
+}